@@ -0,0 +1,132 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite.benchmark;
+
+import java.util.Comparator;
+
+import javax.swing.JTable;
+import javax.swing.RowFilter;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+import net.nextencia.dj.swingsuite.DefaultTableHeaderFilter;
+import net.nextencia.dj.swingsuite.FilterableTableHeader;
+import net.nextencia.dj.swingsuite.FilterableTableHeader.TableHeaderFilter;
+import net.nextencia.dj.swingsuite.FilterableTableHeader.TableHeaderFilterChangeListener;
+
+/**
+ * A table with a filterable header using a single default header filter for all its columns, set up like an application would do.
+ * @author Christopher Deckers
+ */
+public class BenchmarkTable {
+
+  private SyntheticTableModel tableModel;
+  private JTable table;
+  private FilterableTableHeader filterableTableHeader;
+  private DefaultTableHeaderFilter headerFilter;
+
+  /**
+   * @param isRowSorterFiltering true to set the row filter on the row sorter whenever the filters change, like an application does, false to only compile the filters.
+   */
+  public BenchmarkTable(SyntheticTableModel tableModel, boolean isRowSorterFiltering) {
+    this.tableModel = tableModel;
+    table = new JTable(tableModel);
+    table.setAutoCreateRowSorter(true);
+    filterableTableHeader = new FilterableTableHeader(table);
+    headerFilter = new DefaultTableHeaderFilter();
+    for(int i=0; i<tableModel.getColumnCount(); i++) {
+      filterableTableHeader.setHeaderFilter(i, headerFilter);
+    }
+    if(isRowSorterFiltering) {
+      filterableTableHeader.addFilterChangeListener(new TableHeaderFilterChangeListener() {
+        @SuppressWarnings("unchecked")
+        public void processFilterModification(int[] columns) {
+          ((TableRowSorter<TableModel>)table.getRowSorter()).setRowFilter(filterableTableHeader.getRowFilter());
+        }
+      });
+    }
+    table.setTableHeader(filterableTableHeader);
+  }
+
+  public SyntheticTableModel getTableModel() {
+    return tableModel;
+  }
+
+  public JTable getTable() {
+    return table;
+  }
+
+  public FilterableTableHeader getFilterableTableHeader() {
+    return filterableTableHeader;
+  }
+
+  public DefaultTableHeaderFilter getHeaderFilter() {
+    return headerFilter;
+  }
+
+  @SuppressWarnings("unchecked")
+  public Comparator<Object> getComparator(int column) {
+    return (Comparator<Object>)((TableRowSorter<TableModel>)table.getRowSorter()).getComparator(column);
+  }
+
+  public void notifyFilterChanged(int... columns) {
+    TableHeaderFilter[] headerFilters = new TableHeaderFilter[columns.length];
+    for(int i=0; i<columns.length; i++) {
+      headerFilters[i] = headerFilter;
+    }
+    filterableTableHeader.notifyFilterChanged(columns, headerFilters);
+  }
+
+  /**
+   * Count the rows that the row filter of the header includes, calling it for each row like a row sorter does.
+   */
+  public int countIncludedRows() {
+    RowFilter<TableModel, Integer> rowFilter = filterableTableHeader.getRowFilter();
+    ModelEntry entry = new ModelEntry(tableModel);
+    int count = 0;
+    for(int row=tableModel.getRowCount()-1; row>=0; row--) {
+      entry.row = row;
+      if(rowFilter.include(entry)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static class ModelEntry extends RowFilter.Entry<TableModel, Integer> {
+
+    private TableModel tableModel;
+    private int row;
+
+    public ModelEntry(TableModel tableModel) {
+      this.tableModel = tableModel;
+    }
+
+    @Override
+    public TableModel getModel() {
+      return tableModel;
+    }
+
+    @Override
+    public int getValueCount() {
+      return tableModel.getColumnCount();
+    }
+
+    @Override
+    public Object getValue(int index) {
+      return tableModel.getValueAt(row, index);
+    }
+
+    @Override
+    public Integer getIdentifier() {
+      return row;
+    }
+
+  }
+
+}
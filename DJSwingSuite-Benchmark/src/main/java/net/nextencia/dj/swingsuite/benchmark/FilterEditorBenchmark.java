@@ -0,0 +1,93 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite.benchmark;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JPopupMenu;
+
+import net.nextencia.dj.swingsuite.DefaultTableHeaderFilter;
+import net.nextencia.dj.swingsuite.benchmark.SyntheticTableModel.ColumnType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time to open the filter popup of a column, which collects, counts and sorts the distinct values of the column the first time, and then reuses them.
+ * @author Christopher Deckers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class FilterEditorBenchmark {
+
+  @Param({"1000", "100000", "1000000", "5000000"})
+  private int rowCount;
+
+  @Param({"10", "1000000"})
+  private int cardinality;
+
+  @Param({"NUMBER", "STRING", "DATE"})
+  private ColumnType columnType;
+
+  @Param({"false", "true"})
+  private boolean isCollectingInParallel;
+
+  private BenchmarkTable benchmarkTable;
+  private int column;
+  private int[] rows;
+  private Comparator<Object> comparator;
+  private SyntheticTableModel coldTableModel;
+  private DefaultTableHeaderFilter coldHeaderFilter;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    benchmarkTable = new BenchmarkTable(new SyntheticTableModel(rowCount, cardinality), false);
+    benchmarkTable.getHeaderFilter().setCollectingValuesInParallel(isCollectingInParallel);
+    column = columnType.getColumn();
+    // All the rows, like the header does when no other column is filtered.
+    rows = new int[rowCount];
+    for(int i=0; i<rowCount; i++) {
+      rows[i] = i;
+    }
+    comparator = benchmarkTable.getComparator(column);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    // A fresh model and filter have no index of the values, and they do not accumulate listeners across invocations.
+    coldTableModel = benchmarkTable.getTableModel().copy();
+    coldHeaderFilter = new DefaultTableHeaderFilter();
+    coldHeaderFilter.setCollectingValuesInParallel(isCollectingInParallel);
+  }
+
+  @Benchmark
+  public JPopupMenu openFilterEditor() {
+    return coldHeaderFilter.getFilterEditor(benchmarkTable.getFilterableTableHeader(), coldTableModel, column, rows, comparator);
+  }
+
+  @Benchmark
+  public JPopupMenu reopenFilterEditor() {
+    return benchmarkTable.getHeaderFilter().getFilterEditor(benchmarkTable.getFilterableTableHeader(), benchmarkTable.getTableModel(), column, rows, comparator);
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.nextencia.dj.swingsuite.DefaultTableHeaderFilter;
+import net.nextencia.dj.swingsuite.FilterableTableHeader;
+import net.nextencia.dj.swingsuite.benchmark.SyntheticTableModel.ColumnType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time to apply a filter modification when all the columns are filtered, from the notification of the header to the row sorter having filtered the rows. Each invocation alternates between accepting the even and the odd values.
+ * @author Christopher Deckers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class RefilterBenchmark {
+
+  @Param({"1000", "100000", "1000000", "5000000"})
+  private int rowCount;
+
+  @Param({"10", "1000000"})
+  private int cardinality;
+
+  private BenchmarkTable benchmarkTable;
+  private int[] columns;
+  private List<Object>[][] columnToValueLists;
+  private int invocation;
+
+  @SuppressWarnings("unchecked")
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    benchmarkTable = new BenchmarkTable(new SyntheticTableModel(rowCount, cardinality), true);
+    ColumnType[] columnTypes = ColumnType.values();
+    columns = new int[columnTypes.length];
+    columnToValueLists = new List[columnTypes.length][];
+    for(int i=0; i<columnTypes.length; i++) {
+      int column = columnTypes[i].getColumn();
+      columns[i] = column;
+      SyntheticTableModel tableModel = benchmarkTable.getTableModel();
+      columnToValueLists[i] = new List[] {tableModel.getValues(column, 2, 0), tableModel.getValues(column, 2, 1)};
+      benchmarkTable.getHeaderFilter().setAcceptedValues(column, columnToValueLists[i][0]);
+    }
+    benchmarkTable.notifyFilterChanged(columns);
+  }
+
+  @Benchmark
+  public int refilterOneColumn() {
+    invocation++;
+    benchmarkTable.getHeaderFilter().setAcceptedValues(columns[0], columnToValueLists[0][invocation % 2]);
+    benchmarkTable.notifyFilterChanged(columns[0]);
+    return benchmarkTable.getTable().getRowCount();
+  }
+
+  @Benchmark
+  public int refilterAllColumns() {
+    invocation++;
+    FilterableTableHeader filterableTableHeader = benchmarkTable.getFilterableTableHeader();
+    DefaultTableHeaderFilter headerFilter = benchmarkTable.getHeaderFilter();
+    filterableTableHeader.beginFilterUpdate();
+    try {
+      for(int i=0; i<columns.length; i++) {
+        headerFilter.setAcceptedValues(columns[i], columnToValueLists[i][invocation % 2]);
+        benchmarkTable.notifyFilterChanged(columns[i]);
+      }
+    } finally {
+      filterableTableHeader.endFilterUpdate();
+    }
+    return benchmarkTable.getTable().getRowCount();
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.nextencia.dj.swingsuite.benchmark.SyntheticTableModel.ColumnType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time for a row sorter to call the row filter of the header on all the rows, once the filter of a column is compiled. Half of the distinct values of the column are accepted.
+ * @author Christopher Deckers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class RowFilterBenchmark {
+
+  @Param({"1000", "100000", "1000000", "5000000"})
+  private int rowCount;
+
+  @Param({"10", "1000000"})
+  private int cardinality;
+
+  @Param({"NUMBER", "STRING", "DATE"})
+  private ColumnType columnType;
+
+  private BenchmarkTable benchmarkTable;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    benchmarkTable = new BenchmarkTable(new SyntheticTableModel(rowCount, cardinality), false);
+    int column = columnType.getColumn();
+    benchmarkTable.getHeaderFilter().setAcceptedValues(column, benchmarkTable.getTableModel().getValues(column, 2, 0));
+    benchmarkTable.notifyFilterChanged(column);
+    // Compile the filter outside of the measurement.
+    benchmarkTable.countIncludedRows();
+  }
+
+  @Benchmark
+  public int includeAllRows() {
+    return benchmarkTable.countIncludedRows();
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import net.nextencia.dj.swingsuite.ConcurrentReadTableModel;
+
+/**
+ * A read-only table model with a number, a string and a date column, the values of which are spread pseudo-randomly over a given number of distinct values. The same row always gets the same values, so that runs are comparable.
+ * @author Christopher Deckers
+ */
+public class SyntheticTableModel extends AbstractTableModel implements ConcurrentReadTableModel {
+
+  public static enum ColumnType {
+    NUMBER(Integer.class),
+    STRING(String.class),
+    DATE(Date.class),
+    ;
+
+    private Class<?> columnClass;
+
+    private ColumnType(Class<?> columnClass) {
+      this.columnClass = columnClass;
+    }
+
+    public int getColumn() {
+      return ordinal();
+    }
+
+  }
+
+  private static final long BASE_MILLIS = 1500000000000L;
+
+  private int[] rowToKey;
+  private int cardinality;
+  private Object[][] columnToKeyValues;
+
+  /**
+   * @param rowCount the number of rows.
+   * @param cardinality the maximum number of distinct values of a column.
+   */
+  public SyntheticTableModel(int rowCount, int cardinality) {
+    this.cardinality = Math.max(1, Math.min(rowCount, cardinality));
+    rowToKey = new int[rowCount];
+    for(int row=0; row<rowCount; row++) {
+      rowToKey[row] = (int)((mix(row) >>> 1) % this.cardinality);
+    }
+    ColumnType[] columnTypes = ColumnType.values();
+    columnToKeyValues = new Object[columnTypes.length][this.cardinality];
+    for(int key=0; key<this.cardinality; key++) {
+      columnToKeyValues[ColumnType.NUMBER.getColumn()][key] = key;
+      columnToKeyValues[ColumnType.STRING.getColumn()][key] = "Item " + key;
+      // One value per minute, so that dates can also be grouped by hour or day.
+      columnToKeyValues[ColumnType.DATE.getColumn()][key] = new Date(BASE_MILLIS + key * 60000L);
+    }
+  }
+
+  private SyntheticTableModel(SyntheticTableModel tableModel) {
+    rowToKey = tableModel.rowToKey;
+    cardinality = tableModel.cardinality;
+    columnToKeyValues = tableModel.columnToKeyValues;
+  }
+
+  /**
+   * Create a model that shares the data of this one but has its own listeners, which is cheap compared to generating the data.
+   */
+  public SyntheticTableModel copy() {
+    return new SyntheticTableModel(this);
+  }
+
+  /**
+   * The SplitMix64 finalizer, to spread consecutive rows over the keys.
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+    return value ^ (value >>> 31);
+  }
+
+  public int getCardinality() {
+    return cardinality;
+  }
+
+  /**
+   * Get the distinct values of a column whose key modulo the given step is the given offset.
+   */
+  public List<Object> getValues(int column, int step, int offset) {
+    List<Object> valueList = new ArrayList<Object>();
+    for(int key=offset; key<cardinality; key+=step) {
+      valueList.add(columnToKeyValues[column][key]);
+    }
+    return valueList;
+  }
+
+  public int getRowCount() {
+    return rowToKey.length;
+  }
+
+  public int getColumnCount() {
+    return columnToKeyValues.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return ColumnType.values()[column].name();
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    return ColumnType.values()[column].columnClass;
+  }
+
+  public Object getValueAt(int row, int column) {
+    return columnToKeyValues[column][rowToKey[row]];
+  }
+
+}
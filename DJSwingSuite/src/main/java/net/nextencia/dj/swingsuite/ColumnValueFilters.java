@@ -0,0 +1,319 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import java.util.BitSet;
+import java.util.Date;
+import java.util.Set;
+
+import net.nextencia.dj.swingsuite.FilterableTableHeader.ColumnValueFilter;
+
+/**
+ * Value filters specialized according to the type of the accepted values, to avoid hashing boxed values when filtering rows.
+ * @author Christopher Deckers
+ */
+class ColumnValueFilters {
+
+  private ColumnValueFilters() {
+  }
+
+  /**
+   * Create a filter accepting the values of a set, using the most efficient representation for the classes of these values.
+   * @param acceptedValueSet the accepted values, which must not be modified afterwards.
+   * @param valueIndex the index of the values of the column, or null if there is none.
+   * @return the value filter.
+   */
+  public static ColumnValueFilter createAcceptedValueFilter(Set<Object> acceptedValueSet, TableColumnValueIndex valueIndex) {
+    boolean isNullAccepted = false;
+    Class<?> valueClass = null;
+    for(Object value: acceptedValueSet) {
+      if(value == null) {
+        isNullAccepted = true;
+      } else {
+        Class<?> clazz = value instanceof Enum? ((Enum<?>)value).getDeclaringClass(): value.getClass();
+        if(valueClass == null) {
+          valueClass = clazz;
+        } else if(valueClass != clazz) {
+          valueClass = Object.class;
+        }
+      }
+    }
+    if(valueClass != null && valueClass.isEnum()) {
+      return new EnumValueFilter(acceptedValueSet, valueClass, isNullAccepted);
+    }
+    if(valueClass == Boolean.class) {
+      return new BooleanValueFilter(acceptedValueSet.contains(Boolean.TRUE), acceptedValueSet.contains(Boolean.FALSE), isNullAccepted);
+    }
+    if(valueClass == Integer.class || valueClass == Long.class || valueClass == Short.class || valueClass == Byte.class || valueClass == Double.class || valueClass == Float.class) {
+      return new NumberValueFilter(acceptedValueSet, valueClass, isNullAccepted);
+    }
+    if(valueClass == Date.class) {
+      return new DateValueFilter(acceptedValueSet, isNullAccepted);
+    }
+    if(valueIndex != null && valueIndex.isUpToDate()) {
+      return new DictionaryValueFilter(acceptedValueSet, valueIndex);
+    }
+    return new SetValueFilter(acceptedValueSet);
+  }
+
+  private static class SetValueFilter implements ColumnValueFilter {
+
+    private Set<Object> acceptedValueSet;
+
+    public SetValueFilter(Set<Object> acceptedValueSet) {
+      this.acceptedValueSet = acceptedValueSet;
+    }
+
+    public boolean include(int row, Object value) {
+      return acceptedValueSet.contains(value);
+    }
+
+  }
+
+  private static class EnumValueFilter implements ColumnValueFilter {
+
+    private Class<?> enumClass;
+    private BitSet acceptedOrdinals = new BitSet();
+    private boolean isNullAccepted;
+
+    public EnumValueFilter(Set<Object> acceptedValueSet, Class<?> enumClass, boolean isNullAccepted) {
+      this.enumClass = enumClass;
+      this.isNullAccepted = isNullAccepted;
+      for(Object value: acceptedValueSet) {
+        if(value != null) {
+          acceptedOrdinals.set(((Enum<?>)value).ordinal());
+        }
+      }
+    }
+
+    public boolean include(int row, Object value) {
+      if(value == null) {
+        return isNullAccepted;
+      }
+      // Enum constants with a body are instances of a subclass of their enum.
+      if(value.getClass() != enumClass && !(value instanceof Enum && ((Enum<?>)value).getDeclaringClass() == enumClass)) {
+        return false;
+      }
+      return acceptedOrdinals.get(((Enum<?>)value).ordinal());
+    }
+
+  }
+
+  private static class BooleanValueFilter implements ColumnValueFilter {
+
+    private boolean isTrueAccepted;
+    private boolean isFalseAccepted;
+    private boolean isNullAccepted;
+
+    public BooleanValueFilter(boolean isTrueAccepted, boolean isFalseAccepted, boolean isNullAccepted) {
+      this.isTrueAccepted = isTrueAccepted;
+      this.isFalseAccepted = isFalseAccepted;
+      this.isNullAccepted = isNullAccepted;
+    }
+
+    public boolean include(int row, Object value) {
+      if(value == null) {
+        return isNullAccepted;
+      }
+      if(!(value instanceof Boolean)) {
+        return false;
+      }
+      return ((Boolean)value).booleanValue()? isTrueAccepted: isFalseAccepted;
+    }
+
+  }
+
+  private static class NumberValueFilter implements ColumnValueFilter {
+
+    private Class<?> numberClass;
+    private boolean isDecimal;
+    private LongHashSet acceptedKeys;
+    private boolean isNullAccepted;
+
+    public NumberValueFilter(Set<Object> acceptedValueSet, Class<?> numberClass, boolean isNullAccepted) {
+      this.numberClass = numberClass;
+      this.isNullAccepted = isNullAccepted;
+      isDecimal = numberClass == Double.class || numberClass == Float.class;
+      acceptedKeys = new LongHashSet(acceptedValueSet.size());
+      for(Object value: acceptedValueSet) {
+        if(value != null) {
+          acceptedKeys.add(getKey((Number)value));
+        }
+      }
+    }
+
+    /**
+     * Get a key that is equal for two numbers of the filter class only if they are equal according to their equals method.
+     */
+    private long getKey(Number number) {
+      if(!isDecimal) {
+        return number.longValue();
+      }
+      if(number instanceof Float) {
+        return Float.floatToIntBits(number.floatValue());
+      }
+      return Double.doubleToLongBits(number.doubleValue());
+    }
+
+    public boolean include(int row, Object value) {
+      if(value == null) {
+        return isNullAccepted;
+      }
+      // Numbers of different classes are never equal, like in the set that the filter replaces.
+      if(value.getClass() != numberClass) {
+        return false;
+      }
+      return acceptedKeys.contains(getKey((Number)value));
+    }
+
+  }
+
+  private static class DateValueFilter implements ColumnValueFilter {
+
+    private LongHashSet acceptedMillis;
+    private boolean isNullAccepted;
+
+    public DateValueFilter(Set<Object> acceptedValueSet, boolean isNullAccepted) {
+      this.isNullAccepted = isNullAccepted;
+      acceptedMillis = new LongHashSet(acceptedValueSet.size());
+      for(Object value: acceptedValueSet) {
+        if(value != null) {
+          acceptedMillis.add(((Date)value).getTime());
+        }
+      }
+    }
+
+    public boolean include(int row, Object value) {
+      if(value == null) {
+        return isNullAccepted;
+      }
+      // Subclasses like java.sql.Timestamp have their own notion of equality.
+      if(value.getClass() != Date.class) {
+        return false;
+      }
+      return acceptedMillis.contains(((Date)value).getTime());
+    }
+
+  }
+
+  /**
+   * A filter that looks up the ID of the value of a row in the value index of the column, to test a bit instead of hashing the value. It falls back to the accepted set when the index changed in a way that makes its IDs unreliable.
+   */
+  private static class DictionaryValueFilter implements ColumnValueFilter {
+
+    private Set<Object> acceptedValueSet;
+    private TableColumnValueIndex valueIndex;
+    private int buildCount;
+    private int idCount;
+    private BitSet acceptedIds = new BitSet();
+
+    public DictionaryValueFilter(Set<Object> acceptedValueSet, TableColumnValueIndex valueIndex) {
+      this.acceptedValueSet = acceptedValueSet;
+      this.valueIndex = valueIndex;
+      buildCount = valueIndex.getBuildCount();
+      idCount = valueIndex.getIdCount();
+      for(int id=0; id<idCount; id++) {
+        if(acceptedValueSet.contains(valueIndex.getValue(id))) {
+          acceptedIds.set(id);
+        }
+      }
+    }
+
+    public boolean include(int row, Object value) {
+      if(valueIndex.getBuildCount() == buildCount && row < valueIndex.getRowCount() && valueIndex.isUpToDate()) {
+        int id = valueIndex.getId(row);
+        if(id < idCount) {
+          Object indexedValue = valueIndex.getValue(id);
+          if(indexedValue == value || value != null && value.equals(indexedValue)) {
+            return acceptedIds.get(id);
+          }
+        }
+      }
+      return acceptedValueSet.contains(value);
+    }
+
+  }
+
+  /**
+   * A set of long values using open addressing, which does not box its values.
+   */
+  static class LongHashSet {
+
+    private static final long FREE_KEY = 0;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean containsFreeKey;
+
+    public LongHashSet(int expectedSize) {
+      int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+      keys = new long[capacity];
+      mask = capacity - 1;
+    }
+
+    private static int hash(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int)(h ^ (h >>> 32));
+    }
+
+    public boolean add(long key) {
+      if(key == FREE_KEY) {
+        boolean isAdded = !containsFreeKey;
+        containsFreeKey = true;
+        return isAdded;
+      }
+      int index = hash(key) & mask;
+      while(keys[index] != FREE_KEY) {
+        if(keys[index] == key) {
+          return false;
+        }
+        index = (index + 1) & mask;
+      }
+      keys[index] = key;
+      if(++size * 2 > keys.length) {
+        rehash();
+      }
+      return true;
+    }
+
+    public boolean contains(long key) {
+      if(key == FREE_KEY) {
+        return containsFreeKey;
+      }
+      int index = hash(key) & mask;
+      while(true) {
+        long k = keys[index];
+        if(k == key) {
+          return true;
+        }
+        if(k == FREE_KEY) {
+          return false;
+        }
+        index = (index + 1) & mask;
+      }
+    }
+
+    private void rehash() {
+      long[] oldKeys = keys;
+      keys = new long[oldKeys.length * 2];
+      mask = keys.length - 1;
+      for(long key: oldKeys) {
+        if(key != FREE_KEY) {
+          int index = hash(key) & mask;
+          while(keys[index] != FREE_KEY) {
+            index = (index + 1) & mask;
+          }
+          keys[index] = key;
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,19 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import javax.swing.table.TableModel;
+
+/**
+ * A marker for table models whose getRowCount() and getValueAt() methods can be called from several threads at the same time, as long as the model is not modified meanwhile.<br>
+ * Some components only read such models in parallel when they are explicitly configured to do so.
+ * @author Christopher Deckers
+ */
+public interface ConcurrentReadTableModel extends TableModel {
+
+}
@@ -8,61 +8,101 @@
 package net.nextencia.dj.swingsuite;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.Insets;
-import java.awt.LayoutManager;
-import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.lang.reflect.InvocationTargetException;
 import java.text.Collator;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import javax.swing.AbstractAction;
+import javax.swing.AbstractListModel;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.ListCellRenderer;
+import javax.swing.ListSelectionModel;
 import javax.swing.RowFilter;
-import javax.swing.Scrollable;
+import javax.swing.SpinnerDateModel;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import javax.swing.table.TableModel;
 
+import net.nextencia.dj.swingsuite.FilterableTableHeader.ColumnRowSetFilter;
+import net.nextencia.dj.swingsuite.FilterableTableHeader.ColumnValueFilter;
+import net.nextencia.dj.swingsuite.FilterableTableHeader.CompilableTableHeaderFilter;
 import net.nextencia.dj.swingsuite.FilterableTableHeader.TableHeaderFilter;
 import net.nextencia.dj.swingsuite.JTriStateCheckBox.CheckState;
 
 /**
  * @author Christopher Deckers
  */
-public class DefaultTableHeaderFilter implements TableHeaderFilter {
+public class DefaultTableHeaderFilter implements CompilableTableHeaderFilter {
 
   private static enum Operator {
     EQUAL {
@@ -102,8 +142,128 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
       }
     },
   }
-  
-  private static class NumberCustomFilter {
+
+  private static enum TextOperator {
+    CONTAINS {
+      @Override
+      public String toString() {
+        return "contains";
+      }
+    },
+    STARTS_WITH {
+      @Override
+      public String toString() {
+        return "starts with";
+      }
+    },
+    WILDCARDS {
+      @Override
+      public String toString() {
+        return "matches wildcards";
+      }
+    },
+    REGULAR_EXPRESSION {
+      @Override
+      public String toString() {
+        return "matches regular expression";
+      }
+    },
+  }
+
+  /**
+   * The grouping of the dates of a column in the filter popup, which then lists one entry per period instead of one entry per distinct date.
+   */
+  public static enum DateGrouping {
+    NONE(0),
+    DAY(24 * 60 * 60 * 1000),
+    HOUR(60 * 60 * 1000),
+    MINUTE(60 * 1000),
+    ;
+    private long periodMillis;
+    private DateGrouping(long periodMillis) {
+      this.periodMillis = periodMillis;
+    }
+    /**
+     * Get the number of the period of a date in the local time of a time zone.
+     */
+    long getPeriod(long millis, TimeZone timeZone) {
+      return Math.floorDiv(millis + timeZone.getOffset(millis), periodMillis);
+    }
+  }
+
+  /**
+   * A period of time listed in the filter popup in place of the dates it contains.
+   */
+  private static class DatePeriod {
+    private DateGrouping dateGrouping;
+    private long period;
+    private long startMillis;
+    private long endMillis;
+    public DatePeriod(DateGrouping dateGrouping, long period) {
+      this.dateGrouping = dateGrouping;
+      this.period = period;
+    }
+    public DatePeriod(DateGrouping dateGrouping, long period, long millis, TimeZone timeZone) {
+      this(dateGrouping, period);
+      Calendar calendar = Calendar.getInstance(timeZone);
+      calendar.setTimeInMillis(millis);
+      calendar.set(Calendar.MILLISECOND, 0);
+      calendar.set(Calendar.SECOND, 0);
+      int field = Calendar.MINUTE;
+      if(dateGrouping != DateGrouping.MINUTE) {
+        calendar.set(Calendar.MINUTE, 0);
+        field = Calendar.HOUR_OF_DAY;
+        if(dateGrouping == DateGrouping.DAY) {
+          calendar.set(Calendar.HOUR_OF_DAY, 0);
+          field = Calendar.DAY_OF_MONTH;
+        }
+      }
+      startMillis = calendar.getTimeInMillis();
+      calendar.add(field, 1);
+      endMillis = calendar.getTimeInMillis();
+    }
+    public DateGrouping getDateGrouping() {
+      return dateGrouping;
+    }
+    public long getPeriod() {
+      return period;
+    }
+    public long getStartMillis() {
+      return startMillis;
+    }
+    public long getEndMillis() {
+      return endMillis;
+    }
+    @Override
+    public boolean equals(Object o) {
+      if(!(o instanceof DatePeriod)) {
+        return false;
+      }
+      DatePeriod datePeriod = (DatePeriod)o;
+      return datePeriod.period == period && datePeriod.dateGrouping == dateGrouping;
+    }
+    @Override
+    public int hashCode() {
+      return (int)(period ^ (period >>> 32)) * 31 + dateGrouping.ordinal();
+    }
+  }
+
+  private static interface CustomFilter {
+    public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry, int column);
+    /**
+     * @return the value filter, or null to use the include method.
+     */
+    public ColumnValueFilter getValueFilter();
+  }
+
+  /**
+   * A custom filter accepting ranges of values, which can be resolved with the number index of the column.
+   */
+  private static interface RangeCustomFilter extends CustomFilter {
+    public BitSet getAcceptedRows(TableColumnNumberIndex numberIndex);
+  }
+
+  private static class NumberCustomFilter implements RangeCustomFilter {
     private Operator operator1;
     public Operator getOperator1() {
       return operator1;
@@ -154,12 +314,326 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
       }
       return isIncluded;
     }
+    public ColumnValueFilter getValueFilter() {
+      final NumberCondition condition1 = new NumberCondition(operator1, value1);
+      if(operator2 == null) {
+        return new ColumnValueFilter() {
+          public boolean include(int row, Object value) {
+            return condition1.include(value);
+          }
+        };
+      }
+      final NumberCondition condition2 = new NumberCondition(operator2, value2);
+      if(isOr) {
+        return new ColumnValueFilter() {
+          public boolean include(int row, Object value) {
+            return condition1.include(value) || condition2.include(value);
+          }
+        };
+      }
+      return new ColumnValueFilter() {
+        public boolean include(int row, Object value) {
+          return condition1.include(value) && condition2.include(value);
+        }
+      };
+    }
+    public BitSet getAcceptedRows(TableColumnNumberIndex numberIndex) {
+      BitSet rowBitSet = new BitSet();
+      new NumberCondition(operator1, value1).setAcceptedRows(numberIndex, rowBitSet);
+      if(operator2 != null) {
+        BitSet rowBitSet2 = new BitSet();
+        new NumberCondition(operator2, value2).setAcceptedRows(numberIndex, rowBitSet2);
+        if(isOr) {
+          rowBitSet.or(rowBitSet2);
+        } else {
+          rowBitSet.and(rowBitSet2);
+        }
+      }
+      return rowBitSet;
+    }
   }
-  
+
+  /**
+   * A number comparison with its reference value unboxed, equivalent to NumberCustomFilter.isIncluded().
+   */
+  private static class NumberCondition {
+    private Operator operator;
+    private boolean hasValue;
+    private double value;
+    public NumberCondition(Operator operator, Double value) {
+      this.operator = operator;
+      hasValue = value != null;
+      if(hasValue) {
+        this.value = value;
+      }
+    }
+    public boolean include(Object refValue) {
+      if(!(refValue instanceof Number)) {
+        switch(operator) {
+          case EQUAL: return refValue == null && !hasValue;
+          case DIFFERENT: return refValue == null && hasValue;
+          default: return false;
+        }
+      }
+      if(!hasValue) {
+        return operator == Operator.DIFFERENT;
+      }
+      double number = ((Number)refValue).doubleValue();
+      switch(operator) {
+        case EQUAL: return number == value;
+        case DIFFERENT: return number != value;
+        case GREATER_THAN: return number >= value;
+        case STRICTLY_GREATER_THAN: return number > value;
+        case LESS_THAN: return number <= value;
+        case STRICTLY_LESS_THAN: return number < value;
+      }
+      return false;
+    }
+    /**
+     * Set the bits of the rows accepted by this condition, using binary searches in the sorted values of the column.
+     */
+    public void setAcceptedRows(TableColumnNumberIndex numberIndex, BitSet rowBitSet) {
+      if(!hasValue) {
+        switch(operator) {
+          case EQUAL: numberIndex.setNullRows(rowBitSet); break;
+          case DIFFERENT: numberIndex.setRows(rowBitSet, 0, numberIndex.getSortedCount()); break;
+          default: break;
+        }
+        return;
+      }
+      if(Double.isNaN(value)) {
+        // NaN is different from everything, including itself.
+        if(operator == Operator.DIFFERENT) {
+          numberIndex.setRows(rowBitSet, 0, numberIndex.getSortedCount());
+          numberIndex.setNullRows(rowBitSet);
+        }
+        return;
+      }
+      switch(operator) {
+        case EQUAL:
+          numberIndex.setRows(rowBitSet, numberIndex.getLowerPosition(value), numberIndex.getUpperPosition(value));
+          break;
+        case DIFFERENT:
+          numberIndex.setRows(rowBitSet, 0, numberIndex.getLowerPosition(value));
+          numberIndex.setRows(rowBitSet, numberIndex.getUpperPosition(value), numberIndex.getSortedCount());
+          numberIndex.setNullRows(rowBitSet);
+          break;
+        case GREATER_THAN:
+          numberIndex.setRows(rowBitSet, numberIndex.getLowerPosition(value), numberIndex.getNaNPosition());
+          break;
+        case STRICTLY_GREATER_THAN:
+          numberIndex.setRows(rowBitSet, numberIndex.getUpperPosition(value), numberIndex.getNaNPosition());
+          break;
+        case LESS_THAN:
+          numberIndex.setRows(rowBitSet, 0, numberIndex.getUpperPosition(value));
+          break;
+        case STRICTLY_LESS_THAN:
+          numberIndex.setRows(rowBitSet, 0, numberIndex.getLowerPosition(value));
+          break;
+      }
+    }
+  }
+
+  /**
+   * A range of dates, the bounds of which are inclusive and kept in epoch milliseconds.
+   */
+  private static class DateCustomFilter implements RangeCustomFilter {
+    private boolean hasFrom;
+    private long fromMillis;
+    private boolean hasTo;
+    private long toMillis;
+    public DateCustomFilter(Date from, Date to) {
+      hasFrom = from != null;
+      if(hasFrom) {
+        fromMillis = from.getTime();
+      }
+      hasTo = to != null;
+      if(hasTo) {
+        toMillis = to.getTime();
+      }
+    }
+    public Date getFrom() {
+      return hasFrom? new Date(fromMillis): null;
+    }
+    public Date getTo() {
+      return hasTo? new Date(toMillis): null;
+    }
+    public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry, int column) {
+      return include(entry.getValue(column));
+    }
+    private boolean include(Object value) {
+      if(!(value instanceof Date)) {
+        return false;
+      }
+      long millis = ((Date)value).getTime();
+      return (!hasFrom || millis >= fromMillis) && (!hasTo || millis <= toMillis);
+    }
+    public ColumnValueFilter getValueFilter() {
+      return new ColumnValueFilter() {
+        public boolean include(int row, Object value) {
+          return DateCustomFilter.this.include(value);
+        }
+      };
+    }
+    public BitSet getAcceptedRows(TableColumnNumberIndex numberIndex) {
+      BitSet rowBitSet = new BitSet();
+      int startPosition = hasFrom? numberIndex.getLowerPosition(fromMillis): 0;
+      int endPosition = hasTo? numberIndex.getUpperPosition(toMillis): numberIndex.getSortedCount();
+      numberIndex.setRows(rowBitSet, startPosition, endPosition);
+      return rowBitSet;
+    }
+  }
+
+  /**
+   * A filter accepting the dates of some periods, which looks up the period of the dates in a set of primitive longs.
+   */
+  private static class DatePeriodValueFilter implements ColumnValueFilter {
+    private Set<Object> acceptedValueSet;
+    private DateGrouping dateGrouping;
+    private TimeZone timeZone;
+    private ColumnValueFilters.LongHashSet acceptedPeriods;
+    public DatePeriodValueFilter(Set<Object> acceptedValueSet, DateGrouping dateGrouping, TimeZone timeZone) {
+      this.acceptedValueSet = acceptedValueSet;
+      this.dateGrouping = dateGrouping;
+      this.timeZone = timeZone;
+      acceptedPeriods = new ColumnValueFilters.LongHashSet(acceptedValueSet.size());
+      for(Object value: acceptedValueSet) {
+        if(value instanceof DatePeriod && ((DatePeriod)value).getDateGrouping() == dateGrouping) {
+          acceptedPeriods.add(((DatePeriod)value).getPeriod());
+        }
+      }
+    }
+    public boolean include(int row, Object value) {
+      if(value instanceof Date) {
+        return acceptedPeriods.contains(dateGrouping.getPeriod(((Date)value).getTime(), timeZone));
+      }
+      return acceptedValueSet.contains(value);
+    }
+  }
+
+  /**
+   * A condition on the text of the values, as shown in the filter popup. The pattern is compiled once and each thread reuses its own matcher.
+   */
+  private class TextCustomFilter implements CustomFilter {
+    private int column;
+    private TextOperator operator;
+    private String text;
+    private boolean isCaseSensitive;
+    private Pattern pattern;
+    private ThreadLocal<Matcher> matcherThreadLocal = new ThreadLocal<Matcher>() {
+      @Override
+      protected Matcher initialValue() {
+        return pattern.matcher("");
+      }
+    };
+    public TextCustomFilter(int column, TextOperator operator, String text, boolean isCaseSensitive) throws PatternSyntaxException {
+      this.column = column;
+      this.operator = operator;
+      this.text = text;
+      this.isCaseSensitive = isCaseSensitive;
+      String regExp;
+      switch(operator) {
+        case WILDCARDS: regExp = SwingSuiteUtilities.convertWildcardsToRegExp(text); break;
+        case REGULAR_EXPRESSION: regExp = text; break;
+        default: regExp = Pattern.quote(text); break;
+      }
+      pattern = Pattern.compile(regExp, isCaseSensitive? 0: Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+    public TextOperator getOperator() {
+      return operator;
+    }
+    public String getText() {
+      return text;
+    }
+    public boolean isCaseSensitive() {
+      return isCaseSensitive;
+    }
+    public boolean matches(String text) {
+      Matcher matcher = matcherThreadLocal.get();
+      matcher.reset(text);
+      boolean isMatching;
+      switch(operator) {
+        case STARTS_WITH: isMatching = matcher.lookingAt(); break;
+        case WILDCARDS: isMatching = matcher.matches(); break;
+        default: isMatching = matcher.find(); break;
+      }
+      // Do not retain the text until the next evaluation.
+      matcher.reset("");
+      return isMatching;
+    }
+    public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry, int column) {
+      Object value = entry.getValue(column);
+      return value != null && matches(convertToString(value, entry.getModel(), entry.getIdentifier(), column));
+    }
+    public ColumnValueFilter getValueFilter() {
+      TableColumnValueIndex valueIndex = columnToValueIndexMap.get(column);
+      if(valueIndex == null) {
+        // Converting the values requires the table model, which only the row entries provide.
+        return null;
+      }
+      // Validating the index converts each distinct value once, instead of once per row.
+      valueIndex.validate();
+      return new TextValueFilter(this, valueIndex);
+    }
+  }
+
+  /**
+   * A text filter that remembers the result of each value of the value index of the column, so that the text of a value is converted and matched only once.
+   */
+  private class TextValueFilter implements ColumnValueFilter {
+    private static final byte UNKNOWN = 0;
+    private static final byte REJECTED = 1;
+    private static final byte ACCEPTED = 2;
+    private TextCustomFilter textFilter;
+    private TableColumnValueIndex valueIndex;
+    private int buildCount;
+    // Concurrent evaluations may at worst compute a result again.
+    private volatile byte[] idToResult = new byte[0];
+    public TextValueFilter(TextCustomFilter textFilter, TableColumnValueIndex valueIndex) {
+      this.textFilter = textFilter;
+      this.valueIndex = valueIndex;
+      buildCount = valueIndex.getBuildCount();
+    }
+    public boolean include(int row, Object value) {
+      if(value == null) {
+        return false;
+      }
+      if(valueIndex.getBuildCount() == buildCount && row < valueIndex.getRowCount() && valueIndex.isUpToDate()) {
+        int id = valueIndex.getId(row);
+        if(value.equals(valueIndex.getValue(id))) {
+          byte[] results = idToResult;
+          if(id >= results.length) {
+            results = Arrays.copyOf(results, Math.max(id + 1, valueIndex.getIdCount()));
+            idToResult = results;
+          }
+          byte result = results[id];
+          if(result == UNKNOWN) {
+            result = textFilter.matches(valueIndex.getText(id))? ACCEPTED: REJECTED;
+            results[id] = result;
+          }
+          return result == ACCEPTED;
+        }
+      }
+      return textFilter.matches(convertToString(value, valueIndex.getTableModel(), row, textFilter.column));
+    }
+  }
+
   private static class FilterData {
     private Set<Object> acceptedValueSet;
-    public void setAcceptedValueSet(Set<Object> acceptedValueSet) {
+    private DateGrouping dateGrouping = DateGrouping.NONE;
+    private TimeZone timeZone;
+    /**
+     * Set the accepted values, which replace any custom filter.
+     * @param dateGrouping the grouping of the dates, when the accepted values contain periods rather than dates.
+     * @param timeZone the time zone of the periods.
+     */
+    public void setAcceptedValueSet(Set<Object> acceptedValueSet, DateGrouping dateGrouping, TimeZone timeZone) {
       this.acceptedValueSet = acceptedValueSet;
+      this.dateGrouping = dateGrouping;
+      this.timeZone = timeZone;
+      numberFilter = null;
+      dateFilter = null;
+      textFilter = null;
     }
     public Set<Object> getAcceptedValueSet() {
       return acceptedValueSet;
@@ -171,66 +645,158 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
     public NumberCustomFilter getNumberFilter() {
       return numberFilter;
     }
-    public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry, int column) {
-      if(numberFilter != null) {
-        return numberFilter.include(entry, column);
-      }
-      return acceptedValueSet.contains(entry.getValue(column));
+    private DateCustomFilter dateFilter;
+    public void setDateFilter(DateCustomFilter dateFilter) {
+      this.dateFilter = dateFilter;
     }
-  }
-  
-  private static class ScrollablePanel extends JPanel implements Scrollable {
-
-    private int unit;
-
-    public ScrollablePanel(LayoutManager layoutManager) {
-      super(layoutManager);
-      JCheckBox checkBox = new JCheckBox();
-      checkBox.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
-      unit = checkBox.getPreferredSize().height + 2;
+    public DateCustomFilter getDateFilter() {
+      return dateFilter;
     }
-
-    public Dimension getPreferredScrollableViewportSize() {
-      return getPreferredSize();
+    private TextCustomFilter textFilter;
+    public void setTextFilter(TextCustomFilter textFilter) {
+      this.textFilter = textFilter;
     }
-
-    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
-      return unit;
+    public TextCustomFilter getTextFilter() {
+      return textFilter;
     }
-
-    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
-      return unit * 3;
+    public CustomFilter getCustomFilter() {
+      if(numberFilter != null) {
+        return numberFilter;
+      }
+      if(dateFilter != null) {
+        return dateFilter;
+      }
+      return textFilter;
     }
-
-    public boolean getScrollableTracksViewportHeight() {
-      return getParent().getHeight() > getPreferredSize().height;
+    public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry, int column) {
+      CustomFilter customFilter = getCustomFilter();
+      if(customFilter != null) {
+        return customFilter.include(entry, column);
+      }
+      Object value = entry.getValue(column);
+      if(dateGrouping != DateGrouping.NONE && value instanceof Date) {
+        value = new DatePeriod(dateGrouping, dateGrouping.getPeriod(((Date)value).getTime(), timeZone));
+      }
+      return acceptedValueSet.contains(value);
     }
-
-    public boolean getScrollableTracksViewportWidth() {
-      return getParent().getWidth() > getPreferredSize().width;
+    public ColumnValueFilter getValueFilter(TableColumnValueIndex valueIndex) {
+      CustomFilter customFilter = getCustomFilter();
+      if(customFilter != null) {
+        return customFilter.getValueFilter();
+      }
+      if(dateGrouping != DateGrouping.NONE) {
+        return new DatePeriodValueFilter(acceptedValueSet, dateGrouping, timeZone);
+      }
+      return ColumnValueFilters.createAcceptedValueFilter(acceptedValueSet, valueIndex);
     }
-
   }
-
+  
   private class FilterEditor extends JPanel {
+    private class ValueListModel extends AbstractListModel<String> {
+      private int size;
+      public int getSize() {
+        return size;
+      }
+      public String getElementAt(int index) {
+        return texts[displayedIndexes[index]];
+      }
+      public void setSize(int size) {
+        int oldSize = this.size;
+        this.size = size;
+        if(size < oldSize) {
+          fireIntervalRemoved(this, size, oldSize - 1);
+        } else if(size > oldSize) {
+          fireIntervalAdded(this, oldSize, size - 1);
+        }
+        if(size > 0) {
+          fireContentsChanged(this, 0, Math.min(size, oldSize) - 1);
+        }
+      }
+    }
+    private class ValueCellRenderer extends JPanel implements ListCellRenderer<String> {
+      private JCheckBox checkBox;
+      private JLabel countLabel;
+      public ValueCellRenderer() {
+        super(new BorderLayout());
+        setBorder(BorderFactory.createEmptyBorder(0, 1, 0, 1));
+        checkBox = new JCheckBox();
+        checkBox.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
+        checkBox.setOpaque(false);
+        add(checkBox, BorderLayout.CENTER);
+        countLabel = new JLabel();
+        countLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 0));
+        add(countLabel, BorderLayout.EAST);
+      }
+      public Component getListCellRendererComponent(JList<? extends String> list, String value, int index, boolean isSelected, boolean cellHasFocus) {
+        boolean isValue = index >= 0 && index < valueListModel.getSize();
+        checkBox.setText(value);
+        checkBox.setSelected(isValue && selectionBitSet.get(displayedIndexes[index]));
+        // The prototype is rendered with the largest count.
+        countLabel.setText(isValue? getFormats().getIntegerFormat().format(counts[displayedIndexes[index]]): prototypeCountText);
+        boolean isEnabled = list.isEnabled();
+        checkBox.setEnabled(isEnabled);
+        countLabel.setEnabled(isEnabled);
+        Font font = list.getFont();
+        checkBox.setFont(font);
+        countLabel.setFont(font);
+        boolean isHighlighted = isSelected && list.hasFocus();
+        setOpaque(isHighlighted);
+        Color foreground;
+        if(isHighlighted) {
+          setBackground(list.getSelectionBackground());
+          foreground = list.getSelectionForeground();
+        } else {
+          setBackground(list.getBackground());
+          foreground = list.getForeground();
+        }
+        checkBox.setForeground(foreground);
+        countLabel.setForeground(foreground);
+        return this;
+      }
+    }
     private boolean isAdjusting;
     private List<JComponent> mainFilterComponentList;
     private JTriStateCheckBox selectAllCheckBox;
-    private List<JCheckBox> checkBoxList;
-    private Set<Object> newAcceptedValueSet;
+    private JCheckBox addSelectionCheckBox;
+    private JLink<Void> sortLink;
+    private JList<String> valueList;
+    private ValueListModel valueListModel;
+    private JScrollPane valueScrollPane;
+    private JPanel headerPane;
+    private JPanel noItemsPane;
+    private JLabel loadingLabel;
+    private JPanel centerPane;
+    private JPanel customFilterPane;
+    private int[] displayedIndexes = new int[0];
+    private int displayedCount;
+    private BitSet selectionBitSet = new BitSet();
+    private int selectedCount;
+    private String displayedFilterLC;
+    private boolean isNarrowable;
+    private String[] lowerCaseTexts;
+    private String[] noGroupingSeparatorTexts;
+    private String groupingSeparator;
+    private boolean hasNumbers;
+    private boolean hasDates;
+    private DateGrouping dateGrouping;
+    private TimeZone timeZone;
     private JButton okButton;
     private JTextField filterTextField;
     private JPanel contentPane;
     private FilterData filterData;
     private Object[] values;
-    private Map<Object, String> valueToTextMap;
+    private String[] texts;
+    private int[] counts;
+    private String prototypeCountText;
+    private boolean isSortedByCount;
+    private boolean isLoading;
     private boolean isAddingToCurrentFilter;
     private int column;
     private FilterableTableHeader filterableTableHeader;
     private DefaultTableHeaderFilter headerFilter;
     private boolean isCustomFilterActive;
     private JPopupMenu popupMenu;
-    public FilterEditor(final int column, final FilterableTableHeader filterableTableHeader, final DefaultTableHeaderFilter headerFilter, final JPopupMenu popupMenu, Object[] values, Map<Object, String> valueToTextMap) {
+    public FilterEditor(final int column, final FilterableTableHeader filterableTableHeader, final DefaultTableHeaderFilter headerFilter, final JPopupMenu popupMenu, Object[] values, String[] texts, int[] counts, boolean isLoading) {
       super(new BorderLayout());
       this.popupMenu = popupMenu;
       setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
@@ -241,9 +807,14 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
       if(filterData == null) {
         filterData = new FilterData();
       }
-      isCustomFilterActive = filterData.getNumberFilter() != null;
+      isCustomFilterActive = filterData.getCustomFilter() != null;
+      dateGrouping = headerFilter.getDateGrouping();
+      timeZone = TimeZone.getDefault();
       this.values = values;
-      this.valueToTextMap = valueToTextMap;
+      this.texts = texts;
+      this.counts = counts;
+      this.isLoading = isLoading;
+      groupDates();
       okButton = new JButton("OK");
       JPanel northPane = new JPanel(new BorderLayout());
       northPane.setBorder(BorderFactory.createEmptyBorder(0, 0, 1, 0));
@@ -263,42 +834,24 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
         public void changedUpdate(DocumentEvent e) {
           adjustFilter();
         }
-        private volatile Thread thread;
-        private void adjustFilter() {
-          thread = new Thread("Table filter delay") {
-            @Override
-            public void run() {
-              try {
-                Thread.sleep(200);
-              } catch (InterruptedException e) {
-              }
-              final Thread current = this;
-              if(thread != current) {
-                return;
-              }
-              SwingUtilities.invokeLater(new Runnable() {
-                public void run() {
-                  if(thread != current) {
-                    return;
-                  }
-                  String filter = filterTextField.getText();
-                  if(filter.length() == 0) {
-                    filter = null;
-                  }
-                  setFilter(filter);
-                  thread = null;
-                }
-              });
+        private Runnable filterRunnable = new Runnable() {
+          public void run() {
+            String filter = filterTextField.getText();
+            if(filter.length() == 0) {
+              filter = null;
             }
-          };
-          thread.setDaemon(true);
-          thread.start();
+            setFilter(filter);
+          }
+        };
+        private void adjustFilter() {
+          DelayedActionScheduler.debounce(this, 200, filterRunnable);
         }
       });
       northPane.add(filterTextField, BorderLayout.CENTER);
       add(northPane, BorderLayout.NORTH);
       contentPane = new JPanel(new BorderLayout());
-      populateContentPane();
+      createContentPane();
+      adjustValues();
       add(contentPane, BorderLayout.CENTER);
       JPanel southPane = new JPanel(new BorderLayout());
       southPane.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
@@ -306,6 +859,13 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
       okButton.addActionListener(new ActionListener() {
         public void actionPerformed(ActionEvent e) {
           if(!isCustomFilterActive) {
+            Set<Object> newAcceptedValueSet = new HashSet<Object>();
+            for(int i=0; i<displayedCount; i++) {
+              int index = displayedIndexes[i];
+              if(selectionBitSet.get(index)) {
+                newAcceptedValueSet.add(values[index]);
+              }
+            }
             switch(selectAllCheckBox.getState()) {
               case SELECTED:
                 if(filter == null) {
@@ -314,13 +874,13 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
                   if(isAddingToCurrentFilter) {
                     newAcceptedValueSet.addAll(filterData.getAcceptedValueSet());
                   }
-                  filterData.setAcceptedValueSet(newAcceptedValueSet);
+                  filterData.setAcceptedValueSet(newAcceptedValueSet, dateGrouping, timeZone);
                   setFilterData(column, filterData);
                 }
                 break;
               case NOT_SELECTED:
                 if(!isAddingToCurrentFilter) {
-                  filterData.setAcceptedValueSet(new HashSet<Object>());
+                  filterData.setAcceptedValueSet(new HashSet<Object>(), dateGrouping, timeZone);
                   setFilterData(column, filterData);
                 }
                 break;
@@ -328,7 +888,7 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
                 if(isAddingToCurrentFilter) {
                   newAcceptedValueSet.addAll(filterData.getAcceptedValueSet());
                 }
-                filterData.setAcceptedValueSet(newAcceptedValueSet);
+                filterData.setAcceptedValueSet(newAcceptedValueSet, dateGrouping, timeZone);
                 setFilterData(column, filterData);
                 break;
             }
@@ -345,6 +905,7 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
         }
       });
       buttonPane.add(cancelButton);
+      southPane.add(sortLink, BorderLayout.WEST);
       southPane.add(buttonPane, BorderLayout.EAST);
       add(southPane, BorderLayout.SOUTH);
       SwingUtilities.invokeLater(new Runnable() {
@@ -353,257 +914,623 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
         }
       });
     }
-    private void populateContentPane() {
-      contentPane.removeAll();
-      JPanel centerPane = new JPanel(new BorderLayout());
+    private void createContentPane() {
+      centerPane = new JPanel(new BorderLayout());
       JPanel mainPane = new JPanel(new BorderLayout());
-      JPanel checkBoxPane = new ScrollablePanel(new GridBagLayout());
-      checkBoxPane.setBorder(BorderFactory.createEmptyBorder(1, 1, 1, 1));
-      checkBoxPane.setBackground(UIManager.getColor("TextField.background"));
-      checkBoxList = new ArrayList<JCheckBox>();
+      Color background = UIManager.getColor("TextField.background");
       Insets emptyInsets = new Insets(0, 0, 0, 0);
-      int y = 0;
-      newAcceptedValueSet = new HashSet<Object>();
+      headerPane = new JPanel(new GridBagLayout());
+      headerPane.setBorder(BorderFactory.createEmptyBorder(1, 2, 0, 2));
+      headerPane.setBackground(background);
+      selectAllCheckBox = new JTriStateCheckBox("(Select all)");
+      selectAllCheckBox.setRollingStates(CheckState.SELECTED, CheckState.NOT_SELECTED);
+      selectAllCheckBox.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
+      selectAllCheckBox.setOpaque(false);
+      selectAllCheckBox.addTriStateCheckBoxListener(new TriStateCheckBoxListener() {
+        public void stateChanged(JTriStateCheckBox triStateCheckBox, CheckState checkState) {
+          adjustOkButtonEnabledState();
+          if(isAdjusting) {
+            return;
+          }
+          boolean isSelected = checkState == CheckState.SELECTED;
+          for(int i=0; i<displayedCount; i++) {
+            selectionBitSet.set(displayedIndexes[i], isSelected);
+          }
+          selectedCount = isSelected? displayedCount: 0;
+          valueList.repaint();
+        }
+      });
+      headerPane.add(selectAllCheckBox, new GridBagConstraints(0, 0, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, emptyInsets, 0, 0));
+      sortLink = new JLink<Void>("Sort by count", null);
+      sortLink.addLinkListener(new LinkListener<Void>() {
+        public boolean linkActivated(JLink<Void> link, Void target) {
+          isSortedByCount = !isSortedByCount;
+          sortLink.setText(isSortedByCount? "Sort by value": "Sort by count");
+          sortDisplayedIndexes();
+          valueListModel.setSize(displayedCount);
+          return false;
+        }
+      });
+      addSelectionCheckBox = new JCheckBox("Add selection to current filter");
+      addSelectionCheckBox.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
+      addSelectionCheckBox.setOpaque(false);
+      addSelectionCheckBox.addItemListener(new ItemListener() {
+        public void itemStateChanged(ItemEvent e) {
+          isAddingToCurrentFilter = e.getStateChange() == ItemEvent.SELECTED;
+        }
+      });
+      headerPane.add(addSelectionCheckBox, new GridBagConstraints(0, 1, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, emptyInsets, 0, 0));
+      valueListModel = new ValueListModel();
+      valueList = new JList<String>(valueListModel);
+      valueList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+      valueList.setBackground(background);
+      valueList.setBorder(BorderFactory.createEmptyBorder(0, 1, 1, 1));
+      ValueCellRenderer cellRenderer = new ValueCellRenderer();
+      valueList.setCellRenderer(cellRenderer);
+      // Fixed sizes avoid measuring all the values.
+      valueList.setFixedCellHeight(cellRenderer.getListCellRendererComponent(valueList, " ", -1, false, false).getPreferredSize().height);
+      valueList.addMouseListener(new MouseAdapter() {
+        @Override
+        public void mousePressed(MouseEvent e) {
+          if(e.getButton() != MouseEvent.BUTTON1 || !valueList.isEnabled()) {
+            return;
+          }
+          int index = valueList.locationToIndex(e.getPoint());
+          if(index >= 0 && valueList.getCellBounds(index, index).contains(e.getPoint())) {
+            toggleValue(index);
+          }
+        }
+      });
+      valueList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_SPACE, 0), "toggleValue");
+      valueList.getActionMap().put("toggleValue", new AbstractAction() {
+        public void actionPerformed(ActionEvent e) {
+          int index = valueList.getLeadSelectionIndex();
+          if(index >= 0 && index < valueListModel.getSize()) {
+            toggleValue(index);
+          }
+        }
+      });
       mainFilterComponentList = new ArrayList<JComponent>();
-      selectAllCheckBox = null;
-      boolean isLimiting = false;
+      mainFilterComponentList.add(selectAllCheckBox);
+      mainFilterComponentList.add(addSelectionCheckBox);
+      mainFilterComponentList.add(sortLink);
+      mainFilterComponentList.add(valueList);
+      noItemsPane = new JPanel(new BorderLayout());
+      noItemsPane.setBorder(BorderFactory.createEmptyBorder(1, 1, 1, 1));
+      noItemsPane.setBackground(background);
+      JLabel noItemsLabel = new JLabel("No corresponding items.");
+      noItemsLabel.setFont(noItemsLabel.getFont().deriveFont(Font.ITALIC));
+      noItemsPane.add(noItemsLabel, BorderLayout.NORTH);
+      valueScrollPane = new JScrollPane(valueList);
+      valueScrollPane.setColumnHeaderView(headerPane);
+      valueScrollPane.getVerticalScrollBar().setUnitIncrement(valueList.getFixedCellHeight());
+      Dimension preferredSize = valueScrollPane.getPreferredSize();
+      preferredSize.width = 200;
+      preferredSize.height = 200;
+      valueScrollPane.setPreferredSize(preferredSize);
+      mainPane.add(valueScrollPane, BorderLayout.CENTER);
+      loadingLabel = new JLabel("Loading...");
+      loadingLabel.setFont(loadingLabel.getFont().deriveFont(Font.ITALIC));
+      mainPane.add(loadingLabel, BorderLayout.SOUTH);
+      centerPane.add(mainPane, BorderLayout.CENTER);
+      contentPane.add(centerPane, BorderLayout.CENTER);
+    }
+    /**
+     * Adjust the components after the values have changed.
+     */
+    private void adjustValues() {
+      hasNumbers = false;
+      hasDates = false;
+      String longestText = "";
+      int maxCount = 0;
+      for(int i=0; i<values.length; i++) {
+        hasNumbers |= values[i] instanceof Number;
+        hasDates |= values[i] instanceof Date || values[i] instanceof DatePeriod;
+        String text = texts[i];
+        if(text.length() > longestText.length()) {
+          longestText = text;
+        }
+        maxCount = Math.max(maxCount, counts[i]);
+      }
+      prototypeCountText = getFormats().getIntegerFormat().format(maxCount);
+      valueList.setPrototypeCellValue(longestText);
+      lowerCaseTexts = new String[values.length];
+      noGroupingSeparatorTexts = new String[values.length];
+      if(displayedIndexes.length < values.length) {
+        displayedIndexes = new int[values.length];
+      }
+      isNarrowable = false;
+      loadingLabel.setVisible(isLoading);
+      adjustDisplayedValues();
+      if(customFilterPane == null) {
+        if(hasNumbers || filterData.getNumberFilter() != null) {
+          createNumberFilterPane();
+        } else if(hasDates || filterData.getDateFilter() != null) {
+          createDateFilterPane();
+        } else if(!isLoading || filterData.getTextFilter() != null) {
+          // Wait for all the values to know whether a number or date filter is more appropriate.
+          createTextFilterPane();
+        }
+      }
+    }
+    /**
+     * Replace the dates by their periods when dates are grouped, with the sum of their counts.
+     */
+    private void groupDates() {
+      if(dateGrouping == DateGrouping.NONE) {
+        return;
+      }
+      Map<Long, Integer> periodToIndexMap = new HashMap<Long, Integer>();
+      Object[] groupedValues = new Object[values.length];
+      String[] groupedTexts = new String[values.length];
+      int[] groupedCounts = new int[values.length];
+      int count = 0;
+      for(int i=0; i<values.length; i++) {
+        Object value = values[i];
+        if(!(value instanceof Date)) {
+          groupedValues[count] = value;
+          groupedTexts[count] = texts[i];
+          groupedCounts[count] = counts[i];
+          count++;
+          continue;
+        }
+        long millis = ((Date)value).getTime();
+        long period = dateGrouping.getPeriod(millis, timeZone);
+        Integer index = periodToIndexMap.get(period);
+        if(index == null) {
+          index = count++;
+          periodToIndexMap.put(period, index);
+          DatePeriod datePeriod = new DatePeriod(dateGrouping, period, millis, timeZone);
+          groupedValues[index] = datePeriod;
+          groupedTexts[index] = convertToString(datePeriod);
+        }
+        groupedCounts[index] += counts[i];
+      }
+      values = Arrays.copyOf(groupedValues, count);
+      texts = Arrays.copyOf(groupedTexts, count);
+      counts = Arrays.copyOf(groupedCounts, count);
+    }
+    /**
+     * Adjust the displayed values and their selection after the filter or the values have changed.
+     */
+    private void adjustDisplayedValues() {
       String filterLC = filter;
       if(filterLC != null) {
         filterLC = filterLC.toLowerCase();
       }
-      isAddingToCurrentFilter = false;
-      int itemCount = 0;
-      int maxItemCount = 2000;
-      Set<Object> acceptedValueSet = filterData.getAcceptedValueSet();
-      final NumberCustomFilter numberFilter = filterData.getNumberFilter();
-      boolean hasNumbers = false;
-      String groupingSeparator = null;
-      String filterLCNoGroupingSeparator = null;
-      for (int i = 0; i < values.length; i++) {
-        final Object value = values[i];
-        if(itemCount >= maxItemCount) {
-          isLimiting = true;
-        }
-        boolean isNumber = value instanceof Number;
-        hasNumbers |= isNumber;
-        if(!isLimiting) {
-          String text = valueToTextMap.get(value);
-          boolean isRetained = true;
-          if(filterLC != null) {
-            isRetained = text.toLowerCase().contains(filterLC);
-            if(!isRetained && isNumber) {
-              // For numbers, we want to perform a comparison without grouping separators.
-              if(groupingSeparator == null) {
-                char groupingSeparatorChar = ((DecimalFormat)DecimalFormat.getInstance()).getDecimalFormatSymbols().getGroupingSeparator();
-                if(groupingSeparatorChar == '\u00A0') {
-                  groupingSeparatorChar = ' ';
-                }
-                groupingSeparator = String.valueOf(groupingSeparatorChar);
-                filterLCNoGroupingSeparator = filterLC.replace(groupingSeparator, "");
-              }
-              String newText = text.replace(groupingSeparator, "");
-              // Do not compare if there was no grouping separator.
-              if(newText.length() < text.length()) {
-                isRetained = newText.contains(filterLCNoGroupingSeparator);
-              }
+      int count = 0;
+      boolean isNarrowing = false;
+      if(filterLC == null) {
+        for(int i=0; i<values.length; i++) {
+          displayedIndexes[count++] = i;
+        }
+      } else {
+        String filterLCNoGroupingSeparator = null;
+        if(hasNumbers) {
+          filterLCNoGroupingSeparator = filterLC.replace(getGroupingSeparator(), "");
+        }
+        if(isNarrowable && displayedFilterLC != null && filterLC.contains(displayedFilterLC)) {
+          // The new filter extends the previous one: only the values that are currently displayed can match.
+          isNarrowing = true;
+          for(int i=0; i<displayedCount; i++) {
+            int index = displayedIndexes[i];
+            if(isRetained(index, filterLC, filterLCNoGroupingSeparator)) {
+              displayedIndexes[count++] = index;
             }
           }
-          if(isRetained) {
-            if(itemCount == 0) {
-              selectAllCheckBox = new JTriStateCheckBox("(Select all)");
-              selectAllCheckBox.setRollingStates(CheckState.SELECTED, CheckState.NOT_SELECTED);
-              selectAllCheckBox.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
-              selectAllCheckBox.setOpaque(false);
-              mainFilterComponentList.add(selectAllCheckBox);
-              checkBoxPane.add(selectAllCheckBox, new GridBagConstraints(0, y++, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, emptyInsets, 0, 0));
-              if(filterLC != null && acceptedValueSet != null) {
-                JCheckBox addSelectionCheckBox = new JCheckBox("Add selection to current filter");
-                addSelectionCheckBox.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
-                addSelectionCheckBox.setOpaque(false);
-                mainFilterComponentList.add(addSelectionCheckBox);
-                addSelectionCheckBox.addItemListener(new ItemListener() {
-                  public void itemStateChanged(ItemEvent e) {
-                    isAddingToCurrentFilter = e.getStateChange() == ItemEvent.SELECTED;
-                  }
-                });
-                checkBoxPane.add(addSelectionCheckBox, new GridBagConstraints(0, y++, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, emptyInsets, 0, 0));
-              }
-            }
-            JCheckBox checkBox = new JCheckBox(text);
-            checkBox.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
-            checkBox.setOpaque(false);
-            mainFilterComponentList.add(checkBox);
-            boolean isSelected = acceptedValueSet == null || acceptedValueSet.contains(value);
-            checkBox.setSelected(isSelected);
-            if(isSelected) {
-              newAcceptedValueSet.add(value);
+        } else {
+          for(int i=0; i<values.length; i++) {
+            if(isRetained(i, filterLC, filterLCNoGroupingSeparator)) {
+              displayedIndexes[count++] = i;
             }
-            checkBox.addItemListener(new ItemListener() {
-              public void itemStateChanged(ItemEvent e) {
-                boolean isSelected = e.getStateChange() == ItemEvent.SELECTED;
-                if(isSelected) {
-                  newAcceptedValueSet.add(value);
-                } else {
-                  newAcceptedValueSet.remove(value);
-                }
-                if(isAdjusting) {
-                  return;
-                }
-                adjustSelectAllCheckBoxState();
-              }
-            });
-            checkBoxList.add(checkBox);
-            checkBoxPane.add(checkBox, new GridBagConstraints(0, y++, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, emptyInsets, 0, 0));
-            itemCount++;
           }
         }
       }
-      if(itemCount == 0) {
-        JLabel noItemsLabel = new JLabel("No corresponding items.");
-        noItemsLabel.setFont(noItemsLabel.getFont().deriveFont(Font.ITALIC));
-        checkBoxPane.add(noItemsLabel, new GridBagConstraints(0, y++, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, emptyInsets, 0, 0));
+      displayedCount = count;
+      if(!isNarrowing && isSortedByCount) {
+        sortDisplayedIndexes();
       }
-      checkBoxPane.add(Box.createVerticalGlue(), new GridBagConstraints(0, y++, 1, 1, 1, 1, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, emptyInsets, 0, 0));
-      adjustSelectAllCheckBoxState();
-      okButton.setEnabled(selectAllCheckBox != null && selectAllCheckBox.getState() != CheckState.NOT_SELECTED);
-      if(selectAllCheckBox != null) {
-        selectAllCheckBox.addTriStateCheckBoxListener(new TriStateCheckBoxListener() {
-          public void stateChanged(JTriStateCheckBox triStateCheckBox, CheckState checkState) {
-            okButton.setEnabled(checkState != CheckState.NOT_SELECTED);
-            if(isAdjusting) {
-              return;
-            }
-            isAdjusting = true;
-            for(JCheckBox checkBox: checkBoxList) {
-              checkBox.setSelected(checkState == CheckState.SELECTED);
-            }
-            isAdjusting = false;
-          }
-        });
-        if(filterLC != null) {
-          selectAllCheckBox.setSelected(true);
+      displayedFilterLC = filterLC;
+      isNarrowable = true;
+      Set<Object> acceptedValueSet = filterData.getAcceptedValueSet();
+      selectionBitSet.clear();
+      selectedCount = 0;
+      for(int i=0; i<displayedCount; i++) {
+        int index = displayedIndexes[i];
+        // When the values are narrowed by some text, all the matching ones are initially selected.
+        if(filterLC != null || acceptedValueSet == null || acceptedValueSet.contains(values[index])) {
+          selectionBitSet.set(index);
+          selectedCount++;
         }
       }
-      JScrollPane scrollPane = new JScrollPane(checkBoxPane);
-      Dimension preferredSize = scrollPane.getPreferredSize();
-      preferredSize.width = 200;
-      preferredSize.height = 200;
-      scrollPane.setPreferredSize(preferredSize);
-      mainPane.add(scrollPane, BorderLayout.CENTER);
-      if(isLimiting) {
-        mainPane.add(new JLabel("Only the first " + maxItemCount + " unique items are displayed.", new ImageIcon(DefaultTableHeaderFilter.class.getResource("resource/warning_obj.png")), JLabel.LEADING), BorderLayout.SOUTH);
+      isAddingToCurrentFilter = false;
+      addSelectionCheckBox.setSelected(false);
+      addSelectionCheckBox.setVisible(filterLC != null && acceptedValueSet != null);
+      valueList.clearSelection();
+      valueListModel.setSize(displayedCount);
+      boolean hasItems = displayedCount > 0;
+      if(hasItems || isLoading) {
+        if(valueScrollPane.getViewport().getView() != valueList) {
+          valueScrollPane.setViewportView(valueList);
+          valueScrollPane.setColumnHeaderView(headerPane);
+        }
+      } else if(valueScrollPane.getViewport().getView() != noItemsPane) {
+        valueScrollPane.setViewportView(noItemsPane);
+        valueScrollPane.setColumnHeaderView(null);
       }
-      centerPane.add(mainPane, BorderLayout.CENTER);
-      if(hasNumbers || numberFilter != null) {
-        JPanel numberFilterPane = new JPanel(new GridBagLayout());
-        JCheckBox numberFilterCheckBox = new JCheckBox("Number filter");
-        final Runnable showDialogRunnable = new Runnable() {
-          public void run() {
-            JPanel contentPane = new JPanel(new BorderLayout());
-            contentPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
-            JPanel numberFilterContentPane = new JPanel(new GridBagLayout());
-            final JComboBox<Operator> operator1ComboBox = new JComboBox<>(Operator.values());
-            numberFilterContentPane.add(operator1ComboBox, new GridBagConstraints(1, 0, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(0, 2, 0, 0), 0, 0));
-            final JNumberEntryField<Double> value1NumberField = new JNumberEntryField<Double>(0.0, 14, null, null, true);
-            value1NumberField.setNumber(null);
-            numberFilterContentPane.add(value1NumberField, new GridBagConstraints(2, 0, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(0, 2, 0, 0), 0, 0));
-            final JComboBox<String> andComboBox = new JComboBox<>(new String[] {" ", "and", "or"});
-            numberFilterContentPane.add(andComboBox, new GridBagConstraints(0, 1, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(2, 2, 0, 0), 0, 0));
-            final JComboBox<Operator> operator2ComboBox = new JComboBox<>(Operator.values());
-            operator2ComboBox.setEnabled(false);
-            numberFilterContentPane.add(operator2ComboBox, new GridBagConstraints(1, 1, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(2, 2, 0, 0), 0, 0));
-            final JNumberEntryField<Double> value2NumberField = new JNumberEntryField<Double>(0.0, 14, null, null, true);
-            value2NumberField.setNumber(null);
-            value2NumberField.setEnabled(false);
-            andComboBox.addItemListener(new ItemListener() {
-              public void itemStateChanged(ItemEvent e) {
-                boolean isEnabled = andComboBox.getSelectedIndex() > 0;
-                operator2ComboBox.setEnabled(isEnabled);
-                value2NumberField.setEnabled(isEnabled);
-              }
-            });
-            numberFilterContentPane.add(value2NumberField, new GridBagConstraints(2, 1, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(2, 2, 0, 0), 0, 0));
-            if(numberFilter != null) {
-              operator1ComboBox.setSelectedItem(numberFilter.getOperator1());
-              value1NumberField.setNumber(numberFilter.getValue1());
-              Operator operator2 = numberFilter.getOperator2();
-              if(operator2 != null) {
-                andComboBox.setSelectedIndex(numberFilter.isOr()? 2: 1);
-                operator2ComboBox.setSelectedItem(operator2);
-                value2NumberField.setNumber(numberFilter.getValue2());
-              }
-            }
-            contentPane.add(numberFilterContentPane, BorderLayout.CENTER);
-            JPanel southPane = new JPanel(new BorderLayout());
-            southPane.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
-            JPanel buttonPane = new JPanel(new GridLayout(1, 2));
-            JButton okButton = new JButton("OK");
-            buttonPane.add(okButton);
-            JButton cancelButton = new JButton("Cancel");
-            buttonPane.add(cancelButton);
-            southPane.add(buttonPane, BorderLayout.EAST);
-            contentPane.add(southPane, BorderLayout.SOUTH);
-            popupMenu.setVisible(false);
-            final FilterDialog dialog = getModalDialog(filterableTableHeader.getTable(), contentPane, "Number filter");
-            okButton.addActionListener(new ActionListener() {
-              public void actionPerformed(ActionEvent e) {
-                NumberCustomFilter newNumberFilter = new NumberCustomFilter();
-                newNumberFilter.setFilter1((Operator)operator1ComboBox.getSelectedItem(), value1NumberField.getNumber());
-                switch(andComboBox.getSelectedIndex()) {
-                  case 0: newNumberFilter.setFilter2(null, null, false); break;
-                  case 1: newNumberFilter.setFilter2((Operator)operator2ComboBox.getSelectedItem(), value2NumberField.getNumber(), false); break;
-                  case 2: newNumberFilter.setFilter2((Operator)operator2ComboBox.getSelectedItem(), value2NumberField.getNumber(), true); break;
-                }
-                filterData.setNumberFilter(newNumberFilter);
-                setFilterData(column, filterData);
-                dialog.disposeDialog();
-                filterableTableHeader.notifyFilterChanged(new int[] {column}, new TableHeaderFilter[] {headerFilter});
-              }
-            });
-            cancelButton.addActionListener(new ActionListener() {
-              public void actionPerformed(ActionEvent e) {
-                dialog.disposeDialog();
-              }
-            });
-            SwingUtilities.invokeLater(new Runnable() {
-              public void run() {
-                value1NumberField.requestFocusInWindow();
-              }
-            });
-            dialog.openDialog();
-          }
-        };
-        numberFilterPane.add(numberFilterCheckBox, new GridBagConstraints(0, 0, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, emptyInsets, 0, 0));
-        final JLink<Void> configureLink = new JLink<Void>("(edit)", null);
-        configureLink.setVisible(false);
-        configureLink.addLinkListener(new LinkListener<Void>() {
-          public boolean linkActivated(JLink<Void> link, Void target) {
-            showDialogRunnable.run();
-            return false;
+      headerPane.setVisible(hasItems);
+      adjustSelectAllCheckBoxState();
+      adjustComponentsEnabledState();
+      contentPane.revalidate();
+      contentPane.repaint();
+    }
+    /**
+     * Sort the displayed values by decreasing count or by value, keeping the value order for equal counts.
+     */
+    private void sortDisplayedIndexes() {
+      // Sort the indexes and their counts as a single primitive array.
+      long[] keys = new long[displayedCount];
+      for(int i=0; i<displayedCount; i++) {
+        int index = displayedIndexes[i];
+        long rank = isSortedByCount? Integer.MAX_VALUE - counts[index]: 0;
+        keys[i] = rank << 32 | index;
+      }
+      Arrays.sort(keys);
+      for(int i=0; i<displayedCount; i++) {
+        displayedIndexes[i] = (int)keys[i];
+      }
+    }
+    private boolean isRetained(int index, String filterLC, String filterLCNoGroupingSeparator) {
+      String textLC = lowerCaseTexts[index];
+      if(textLC == null) {
+        textLC = texts[index].toLowerCase();
+        lowerCaseTexts[index] = textLC;
+      }
+      if(textLC.contains(filterLC)) {
+        return true;
+      }
+      if(!(values[index] instanceof Number)) {
+        return false;
+      }
+      // For numbers, we want to perform a comparison without grouping separators.
+      String textLCNoGroupingSeparator = noGroupingSeparatorTexts[index];
+      if(textLCNoGroupingSeparator == null) {
+        textLCNoGroupingSeparator = textLC.replace(getGroupingSeparator(), "");
+        noGroupingSeparatorTexts[index] = textLCNoGroupingSeparator;
+      }
+      // Do not compare if there was no grouping separator.
+      return textLCNoGroupingSeparator.length() < textLC.length() && textLCNoGroupingSeparator.contains(filterLCNoGroupingSeparator);
+    }
+    private String getGroupingSeparator() {
+      if(groupingSeparator == null) {
+        char groupingSeparatorChar = ((DecimalFormat)DecimalFormat.getInstance()).getDecimalFormatSymbols().getGroupingSeparator();
+        if(groupingSeparatorChar == '\u00A0') {
+          groupingSeparatorChar = ' ';
+        }
+        groupingSeparator = String.valueOf(groupingSeparatorChar);
+      }
+      return groupingSeparator;
+    }
+    private void adjustComponentsEnabledState() {
+      boolean isEnabled = !isLoading && !isCustomFilterActive;
+      for(JComponent component: mainFilterComponentList) {
+        component.setEnabled(isEnabled);
+      }
+      adjustOkButtonEnabledState();
+    }
+    private void adjustOkButtonEnabledState() {
+      if(isCustomFilterActive) {
+        okButton.setEnabled(true);
+        return;
+      }
+      okButton.setEnabled(!isLoading && displayedCount > 0 && selectAllCheckBox.getState() != CheckState.NOT_SELECTED);
+    }
+    private void createNumberFilterPane() {
+      final NumberCustomFilter numberFilter = filterData.getNumberFilter();
+      Runnable showDialogRunnable = new Runnable() {
+        public void run() {
+          JPanel contentPane = new JPanel(new BorderLayout());
+          contentPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+          JPanel numberFilterContentPane = new JPanel(new GridBagLayout());
+          final JComboBox<Operator> operator1ComboBox = new JComboBox<>(Operator.values());
+          numberFilterContentPane.add(operator1ComboBox, new GridBagConstraints(1, 0, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(0, 2, 0, 0), 0, 0));
+          final JNumberEntryField<Double> value1NumberField = new JNumberEntryField<Double>(0.0, 14, null, null, true);
+          value1NumberField.setNumber(null);
+          numberFilterContentPane.add(value1NumberField, new GridBagConstraints(2, 0, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(0, 2, 0, 0), 0, 0));
+          final JComboBox<String> andComboBox = new JComboBox<>(new String[] {" ", "and", "or"});
+          numberFilterContentPane.add(andComboBox, new GridBagConstraints(0, 1, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(2, 2, 0, 0), 0, 0));
+          final JComboBox<Operator> operator2ComboBox = new JComboBox<>(Operator.values());
+          operator2ComboBox.setEnabled(false);
+          numberFilterContentPane.add(operator2ComboBox, new GridBagConstraints(1, 1, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(2, 2, 0, 0), 0, 0));
+          final JNumberEntryField<Double> value2NumberField = new JNumberEntryField<Double>(0.0, 14, null, null, true);
+          value2NumberField.setNumber(null);
+          value2NumberField.setEnabled(false);
+          andComboBox.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+              boolean isEnabled = andComboBox.getSelectedIndex() > 0;
+              operator2ComboBox.setEnabled(isEnabled);
+              value2NumberField.setEnabled(isEnabled);
+            }
+          });
+          numberFilterContentPane.add(value2NumberField, new GridBagConstraints(2, 1, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(2, 2, 0, 0), 0, 0));
+          if(numberFilter != null) {
+            operator1ComboBox.setSelectedItem(numberFilter.getOperator1());
+            value1NumberField.setNumber(numberFilter.getValue1());
+            Operator operator2 = numberFilter.getOperator2();
+            if(operator2 != null) {
+              andComboBox.setSelectedIndex(numberFilter.isOr()? 2: 1);
+              operator2ComboBox.setSelectedItem(operator2);
+              value2NumberField.setNumber(numberFilter.getValue2());
+            }
           }
-        });
-        numberFilterPane.add(configureLink, new GridBagConstraints(1, 0, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, emptyInsets, 0, 0));
-        numberFilterCheckBox.addItemListener(new ItemListener() {
-          public void itemStateChanged(ItemEvent e) {
-            boolean isWithFilter = e.getStateChange() == ItemEvent.SELECTED;
-            configureLink.setVisible(isWithFilter);
-            if(numberFilter == null && isWithFilter) {
-              showDialogRunnable.run();
+          contentPane.add(numberFilterContentPane, BorderLayout.CENTER);
+          JPanel southPane = new JPanel(new BorderLayout());
+          southPane.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+          JPanel buttonPane = new JPanel(new GridLayout(1, 2));
+          JButton okButton = new JButton("OK");
+          buttonPane.add(okButton);
+          JButton cancelButton = new JButton("Cancel");
+          buttonPane.add(cancelButton);
+          southPane.add(buttonPane, BorderLayout.EAST);
+          contentPane.add(southPane, BorderLayout.SOUTH);
+          popupMenu.setVisible(false);
+          final FilterDialog dialog = getModalDialog(filterableTableHeader.getTable(), contentPane, "Number filter");
+          okButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+              NumberCustomFilter newNumberFilter = new NumberCustomFilter();
+              newNumberFilter.setFilter1((Operator)operator1ComboBox.getSelectedItem(), value1NumberField.getNumber());
+              switch(andComboBox.getSelectedIndex()) {
+                case 0: newNumberFilter.setFilter2(null, null, false); break;
+                case 1: newNumberFilter.setFilter2((Operator)operator2ComboBox.getSelectedItem(), value2NumberField.getNumber(), false); break;
+                case 2: newNumberFilter.setFilter2((Operator)operator2ComboBox.getSelectedItem(), value2NumberField.getNumber(), true); break;
+              }
+              filterData.setNumberFilter(newNumberFilter);
+              setFilterData(column, filterData);
+              dialog.disposeDialog();
+              filterableTableHeader.notifyFilterChanged(new int[] {column}, new TableHeaderFilter[] {headerFilter});
+            }
+          });
+          cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+              dialog.disposeDialog();
+            }
+          });
+          SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+              value1NumberField.requestFocusInWindow();
             }
-            filterTextField.setEnabled(!isWithFilter);
-            for(JComponent component: mainFilterComponentList) {
-              component.setEnabled(!isWithFilter);
+          });
+          dialog.openDialog();
+        }
+      };
+      createCustomFilterPane("Number filter", numberFilter != null, showDialogRunnable);
+    }
+    private void createDateFilterPane() {
+      final DateCustomFilter dateFilter = filterData.getDateFilter();
+      Runnable showDialogRunnable = new Runnable() {
+        public void run() {
+          JPanel contentPane = new JPanel(new BorderLayout());
+          contentPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+          JPanel dateFilterContentPane = new JPanel(new GridBagLayout());
+          // The bounds default to the range of the listed dates.
+          long minMillis = Long.MAX_VALUE;
+          long maxMillis = Long.MIN_VALUE;
+          for(Object value: values) {
+            if(value instanceof Date) {
+              long millis = ((Date)value).getTime();
+              minMillis = Math.min(minMillis, millis);
+              maxMillis = Math.max(maxMillis, millis);
+            } else if(value instanceof DatePeriod) {
+              minMillis = Math.min(minMillis, ((DatePeriod)value).getStartMillis());
+              maxMillis = Math.max(maxMillis, ((DatePeriod)value).getEndMillis() - 1);
             }
-            isCustomFilterActive = isWithFilter;
           }
-        });
-        numberFilterCheckBox.setSelected(isCustomFilterActive);
-        numberFilterPane.add(Box.createHorizontalGlue(), new GridBagConstraints(2, 0, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, emptyInsets, 0, 0));
-        centerPane.add(numberFilterPane, BorderLayout.SOUTH);
+          if(minMillis > maxMillis) {
+            minMillis = System.currentTimeMillis();
+            maxMillis = minMillis;
+          }
+          Date from = dateFilter == null? new Date(minMillis): dateFilter.getFrom();
+          Date to = dateFilter == null? new Date(maxMillis): dateFilter.getTo();
+          final JCheckBox fromCheckBox = new JCheckBox("From:", from != null);
+          dateFilterContentPane.add(fromCheckBox, new GridBagConstraints(0, 0, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(0, 0, 0, 0), 0, 0));
+          final JSpinner fromSpinner = createDateSpinner(from != null? from: new Date(minMillis));
+          fromSpinner.setEnabled(from != null);
+          dateFilterContentPane.add(fromSpinner, new GridBagConstraints(1, 0, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(0, 2, 0, 0), 0, 0));
+          final JCheckBox toCheckBox = new JCheckBox("To:", to != null);
+          dateFilterContentPane.add(toCheckBox, new GridBagConstraints(0, 1, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(2, 0, 0, 0), 0, 0));
+          final JSpinner toSpinner = createDateSpinner(to != null? to: new Date(maxMillis));
+          toSpinner.setEnabled(to != null);
+          dateFilterContentPane.add(toSpinner, new GridBagConstraints(1, 1, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(2, 2, 0, 0), 0, 0));
+          ItemListener boundItemListener = new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+              fromSpinner.setEnabled(fromCheckBox.isSelected());
+              toSpinner.setEnabled(toCheckBox.isSelected());
+            }
+          };
+          fromCheckBox.addItemListener(boundItemListener);
+          toCheckBox.addItemListener(boundItemListener);
+          contentPane.add(dateFilterContentPane, BorderLayout.CENTER);
+          JPanel southPane = new JPanel(new BorderLayout());
+          southPane.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+          JPanel buttonPane = new JPanel(new GridLayout(1, 2));
+          JButton okButton = new JButton("OK");
+          buttonPane.add(okButton);
+          JButton cancelButton = new JButton("Cancel");
+          buttonPane.add(cancelButton);
+          southPane.add(buttonPane, BorderLayout.EAST);
+          contentPane.add(southPane, BorderLayout.SOUTH);
+          popupMenu.setVisible(false);
+          final FilterDialog dialog = getModalDialog(filterableTableHeader.getTable(), contentPane, "Date filter");
+          okButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+              Date newFrom = fromCheckBox.isSelected()? getSpinnerDate(fromSpinner): null;
+              Date newTo = toCheckBox.isSelected()? getSpinnerDate(toSpinner): null;
+              filterData.setDateFilter(new DateCustomFilter(newFrom, newTo));
+              setFilterData(column, filterData);
+              dialog.disposeDialog();
+              filterableTableHeader.notifyFilterChanged(new int[] {column}, new TableHeaderFilter[] {headerFilter});
+            }
+          });
+          cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+              dialog.disposeDialog();
+            }
+          });
+          dialog.openDialog();
+        }
+      };
+      createCustomFilterPane("Date filter", dateFilter != null, showDialogRunnable);
+    }
+    private void createTextFilterPane() {
+      final TextCustomFilter textFilter = filterData.getTextFilter();
+      Runnable showDialogRunnable = new Runnable() {
+        public void run() {
+          JPanel contentPane = new JPanel(new BorderLayout());
+          contentPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+          JPanel textFilterContentPane = new JPanel(new GridBagLayout());
+          final JComboBox<TextOperator> operatorComboBox = new JComboBox<>(TextOperator.values());
+          textFilterContentPane.add(operatorComboBox, new GridBagConstraints(0, 0, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(0, 0, 0, 0), 0, 0));
+          final JTextField textField = new JTextField(14);
+          textFilterContentPane.add(textField, new GridBagConstraints(1, 0, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(0, 2, 0, 0), 0, 0));
+          final JCheckBox caseSensitiveCheckBox = new JCheckBox("Match case");
+          textFilterContentPane.add(caseSensitiveCheckBox, new GridBagConstraints(0, 1, 2, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(2, 0, 0, 0), 0, 0));
+          if(textFilter != null) {
+            operatorComboBox.setSelectedItem(textFilter.getOperator());
+            textField.setText(textFilter.getText());
+            caseSensitiveCheckBox.setSelected(textFilter.isCaseSensitive());
+          } else {
+            textField.setText(filterTextField.getText());
+          }
+          contentPane.add(textFilterContentPane, BorderLayout.CENTER);
+          JPanel southPane = new JPanel(new BorderLayout());
+          southPane.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+          JPanel buttonPane = new JPanel(new GridLayout(1, 2));
+          final JButton okButton = new JButton("OK");
+          buttonPane.add(okButton);
+          JButton cancelButton = new JButton("Cancel");
+          buttonPane.add(cancelButton);
+          southPane.add(buttonPane, BorderLayout.EAST);
+          contentPane.add(southPane, BorderLayout.SOUTH);
+          final Runnable validationRunnable = new Runnable() {
+            public void run() {
+              boolean isValid = true;
+              try {
+                new TextCustomFilter(column, (TextOperator)operatorComboBox.getSelectedItem(), textField.getText(), false);
+              } catch(PatternSyntaxException e) {
+                isValid = false;
+              }
+              textField.setForeground(isValid? UIManager.getColor("TextField.foreground"): Color.RED);
+              okButton.setEnabled(isValid);
+            }
+          };
+          textField.getDocument().addDocumentListener(new DocumentListener() {
+            public void removeUpdate(DocumentEvent e) {
+              validationRunnable.run();
+            }
+            public void insertUpdate(DocumentEvent e) {
+              validationRunnable.run();
+            }
+            public void changedUpdate(DocumentEvent e) {
+              validationRunnable.run();
+            }
+          });
+          operatorComboBox.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+              validationRunnable.run();
+            }
+          });
+          validationRunnable.run();
+          popupMenu.setVisible(false);
+          final FilterDialog dialog = getModalDialog(filterableTableHeader.getTable(), contentPane, "Text filter");
+          ActionListener okActionListener = new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+              if(!okButton.isEnabled()) {
+                return;
+              }
+              filterData.setTextFilter(new TextCustomFilter(column, (TextOperator)operatorComboBox.getSelectedItem(), textField.getText(), caseSensitiveCheckBox.isSelected()));
+              setFilterData(column, filterData);
+              dialog.disposeDialog();
+              filterableTableHeader.notifyFilterChanged(new int[] {column}, new TableHeaderFilter[] {headerFilter});
+            }
+          };
+          okButton.addActionListener(okActionListener);
+          textField.addActionListener(okActionListener);
+          cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+              dialog.disposeDialog();
+            }
+          });
+          SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+              textField.requestFocusInWindow();
+            }
+          });
+          dialog.openDialog();
+        }
+      };
+      createCustomFilterPane("Text filter", textFilter != null, showDialogRunnable);
+    }
+    private JSpinner createDateSpinner(Date date) {
+      JSpinner spinner = new JSpinner(new SpinnerDateModel(date, null, null, Calendar.MINUTE));
+      DateFormat format = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+      if(format instanceof SimpleDateFormat) {
+        spinner.setEditor(new JSpinner.DateEditor(spinner, ((SimpleDateFormat)format).toPattern()));
       }
-      contentPane.add(centerPane, BorderLayout.CENTER);
-      contentPane.revalidate();
-      contentPane.repaint();
+      return spinner;
+    }
+    private Date getSpinnerDate(JSpinner spinner) {
+      try {
+        spinner.commitEdit();
+      } catch(ParseException e) {
+        // Keep the last valid date.
+      }
+      return (Date)spinner.getValue();
+    }
+    private void createCustomFilterPane(String text, final boolean isFilterDefined, final Runnable showDialogRunnable) {
+      Insets emptyInsets = new Insets(0, 0, 0, 0);
+      customFilterPane = new JPanel(new GridBagLayout());
+      JCheckBox customFilterCheckBox = new JCheckBox(text);
+      customFilterPane.add(customFilterCheckBox, new GridBagConstraints(0, 0, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, emptyInsets, 0, 0));
+      final JLink<Void> configureLink = new JLink<Void>("(edit)", null);
+      configureLink.setVisible(false);
+      configureLink.addLinkListener(new LinkListener<Void>() {
+        public boolean linkActivated(JLink<Void> link, Void target) {
+          showDialogRunnable.run();
+          return false;
+        }
+      });
+      customFilterPane.add(configureLink, new GridBagConstraints(1, 0, 1, 1, 0, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, emptyInsets, 0, 0));
+      customFilterCheckBox.addItemListener(new ItemListener() {
+        public void itemStateChanged(ItemEvent e) {
+          boolean isWithFilter = e.getStateChange() == ItemEvent.SELECTED;
+          configureLink.setVisible(isWithFilter);
+          if(!isFilterDefined && isWithFilter) {
+            showDialogRunnable.run();
+          }
+          filterTextField.setEnabled(!isWithFilter);
+          isCustomFilterActive = isWithFilter;
+          adjustComponentsEnabledState();
+        }
+      });
+      customFilterCheckBox.setSelected(isCustomFilterActive);
+      customFilterPane.add(Box.createHorizontalGlue(), new GridBagConstraints(2, 0, 1, 1, 1, 0, GridBagConstraints.WEST, GridBagConstraints.NONE, emptyInsets, 0, 0));
+      centerPane.add(customFilterPane, BorderLayout.SOUTH);
+    }
+    /**
+     * Set the values that the editor shows, with the number of rows having each value.
+     * @param isLoading true if more values are expected, in which case the selection cannot be changed yet.
+     */
+    public void setValues(Object[] values, String[] texts, int[] counts, boolean isLoading) {
+      if(values.length < this.values.length) {
+        // The displayed indexes refer to the previous values until they are adjusted.
+        valueListModel.setSize(0);
+      }
+      this.values = values;
+      this.texts = texts;
+      this.counts = counts;
+      this.isLoading = isLoading;
+      groupDates();
+      adjustValues();
     }
     private String filter;
     private void setFilter(String filter) {
@@ -611,25 +1538,23 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
         return;
       }
       this.filter = filter;
-      populateContentPane();
+      adjustDisplayedValues();
+    }
+    private void toggleValue(int listIndex) {
+      int index = displayedIndexes[listIndex];
+      boolean isSelected = !selectionBitSet.get(index);
+      selectionBitSet.set(index, isSelected);
+      selectedCount += isSelected? 1: -1;
+      valueList.repaint(valueList.getCellBounds(listIndex, listIndex));
+      adjustSelectAllCheckBoxState();
     }
     private void adjustSelectAllCheckBoxState() {
       if(selectAllCheckBox == null) {
         return;
       }
       isAdjusting = true;
-      boolean hasSelected = false;
-      boolean hasDeselected = false;
-      for(JCheckBox checkBox: checkBoxList) {
-        if(checkBox.isSelected()) {
-          hasSelected = true;
-        } else {
-          hasDeselected = true;
-        }
-        if(hasSelected && hasDeselected) {
-          break;
-        }
-      }
+      boolean hasSelected = selectedCount > 0;
+      boolean hasDeselected = selectedCount < displayedCount;
       selectAllCheckBox.setState(hasSelected? hasDeselected? CheckState.INDETERMINATE: CheckState.SELECTED: CheckState.NOT_SELECTED);
       isAdjusting = false;
     }
@@ -678,58 +1603,677 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
     }
   }
 
-  public JPopupMenu getFilterEditor(FilterableTableHeader filterableTableHeader, TableModel tableModel, int column, int[] rows, final Comparator<Object> valueComparator) {
-    Map<Object, String> valueToTextMap = new HashMap<Object, String>();
-    for(int i=0; i<rows.length; i++) {
-      int row = rows[i];
-      Object o = tableModel.getValueAt(row, column);
-      valueToTextMap.put(o, convertToString(o, tableModel, row, column));
+  private Map<Integer, TableColumnValueIndex> columnToValueIndexMap = new HashMap<Integer, TableColumnValueIndex>();
+
+  /**
+   * Get the index of the distinct values of a column, which is created if needed and kept up to date with the events of the table model. The index may need to be validated before use.
+   */
+  TableColumnValueIndex getColumnValueIndex(TableModel tableModel, int column) {
+    TableColumnValueIndex valueIndex = columnToValueIndexMap.get(column);
+    if(valueIndex == null || valueIndex.getTableModel() != tableModel) {
+      if(valueIndex != null) {
+        valueIndex.dispose();
+      }
+      valueIndex = new TableColumnValueIndex(this, tableModel, column);
+      columnToValueIndexMap.put(column, valueIndex);
     }
-    Object[] values = valueToTextMap.keySet().toArray();
-    Arrays.sort(values, new Comparator<Object>() {
-      public int compare(Object o1, Object o2) {
-        if(o1 == null) {
-          if(o2 == null) {
-            return 0;
-          }
-          return -1;
+    return valueIndex;
+  }
+
+  private Map<Integer, TableColumnNumberIndex> columnToNumberIndexMap = new HashMap<Integer, TableColumnNumberIndex>();
+
+  private TableColumnNumberIndex getColumnNumberIndex(TableModel tableModel, int column, boolean isIndexingDates) {
+    TableColumnNumberIndex numberIndex = columnToNumberIndexMap.get(column);
+    if(numberIndex == null || numberIndex.getTableModel() != tableModel || numberIndex.isIndexingDates() != isIndexingDates) {
+      if(numberIndex != null) {
+        numberIndex.dispose();
+      }
+      numberIndex = new TableColumnNumberIndex(tableModel, column, isIndexingDates);
+      columnToNumberIndexMap.put(column, numberIndex);
+    }
+    return numberIndex;
+  }
+
+  private boolean isIndexingNumbers;
+
+  /**
+   * Set whether number and date filters use an index of the sorted values of their column, to find the accepted rows with binary searches instead of testing every row. The index is kept up to date with the table model, at the cost of about 20 bytes per row.
+   * @param isIndexingNumbers true to index the columns that have a number or date filter, false otherwise.
+   */
+  public void setIndexingNumbers(boolean isIndexingNumbers) {
+    this.isIndexingNumbers = isIndexingNumbers;
+    if(!isIndexingNumbers) {
+      for(TableColumnNumberIndex numberIndex: columnToNumberIndexMap.values()) {
+        numberIndex.dispose();
+      }
+      columnToNumberIndexMap.clear();
+    }
+  }
+
+  public boolean isIndexingNumbers() {
+    return isIndexingNumbers;
+  }
+
+  /**
+   * A custom filter that computes all its rows from the number index of the column, while single rows are tested directly.
+   */
+  private class IndexedCustomFilter implements ColumnRowSetFilter {
+
+    private RangeCustomFilter customFilter;
+    private ColumnValueFilter valueFilter;
+
+    public IndexedCustomFilter(RangeCustomFilter customFilter) {
+      this.customFilter = customFilter;
+      valueFilter = customFilter.getValueFilter();
+    }
+
+    public boolean include(int row, Object value) {
+      return valueFilter.include(row, value);
+    }
+
+    public BitSet getAcceptedRows(TableModel tableModel, int column) {
+      if(!isIndexingNumbers) {
+        return null;
+      }
+      TableColumnNumberIndex numberIndex = getColumnNumberIndex(tableModel, column, customFilter instanceof DateCustomFilter);
+      numberIndex.validate();
+      return customFilter.getAcceptedRows(numberIndex);
+    }
+
+  }
+
+  private DateGrouping dateGrouping = DateGrouping.NONE;
+
+  /**
+   * Set how the dates of a column are grouped in the filter popup, so that timestamps are listed by day, hour or minute instead of individually. The grouping applies to the popups opened afterwards.
+   * @param dateGrouping the grouping, which is DateGrouping.NONE by default.
+   */
+  public void setDateGrouping(DateGrouping dateGrouping) {
+    this.dateGrouping = dateGrouping;
+  }
+
+  public DateGrouping getDateGrouping() {
+    return dateGrouping;
+  }
+
+  private boolean isLoadingAsynchronously;
+
+  /**
+   * Set whether the values of a filter popup are collected and sorted in the background when they are not readily available. In that case, the popup is shown immediately in a loading state and values appear as they are found.
+   * @param isLoadingAsynchronously true to load the values in the background, false otherwise.
+   */
+  public void setLoadingAsynchronously(boolean isLoadingAsynchronously) {
+    this.isLoadingAsynchronously = isLoadingAsynchronously;
+  }
+
+  public boolean isLoadingAsynchronously() {
+    return isLoadingAsynchronously;
+  }
+
+  private boolean isCollectingValuesInParallel;
+
+  /**
+   * Set whether the values of large columns are collected and sorted using several threads. This only applies to table models implementing ConcurrentReadTableModel, and the comparators of the row sorter must then be thread-safe, except for collators.
+   * @param isCollectingValuesInParallel true to collect the values in parallel, false otherwise.
+   */
+  public void setCollectingValuesInParallel(boolean isCollectingValuesInParallel) {
+    this.isCollectingValuesInParallel = isCollectingValuesInParallel;
+  }
+
+  public boolean isCollectingValuesInParallel() {
+    return isCollectingValuesInParallel;
+  }
+
+  private int parallelCollectionThreshold = 100000;
+
+  /**
+   * Set the number of rows from which the values are collected in parallel, when parallel collection is enabled.
+   * @param parallelCollectionThreshold the minimum number of rows, which is 100000 by default.
+   */
+  public void setParallelCollectionThreshold(int parallelCollectionThreshold) {
+    this.parallelCollectionThreshold = parallelCollectionThreshold;
+  }
+
+  public int getParallelCollectionThreshold() {
+    return parallelCollectionThreshold;
+  }
+
+  boolean isCollectingInParallel(TableModel tableModel, int count) {
+    return isCollectingValuesInParallel && tableModel instanceof ConcurrentReadTableModel && count >= parallelCollectionThreshold;
+  }
+
+  public JPopupMenu getFilterEditor(FilterableTableHeader filterableTableHeader, TableModel tableModel, int column, int[] rows, final Comparator<Object> valueComparator) {
+    TableColumnValueIndex valueIndex = getColumnValueIndex(tableModel, column);
+    JPopupMenu popupMenu = new JPopupMenu();
+    popupMenu.setLayout(new BorderLayout());
+    FilterEditor filterEditor;
+    if(isLoadingAsynchronously && !(valueIndex.isUpToDate() && valueIndex.hasSortedIds(valueComparator))) {
+      filterEditor = new FilterEditor(column, filterableTableHeader, this, popupMenu, new Object[0], new String[0], new int[0], true);
+      final FilterEditorLoader filterEditorLoader = new FilterEditorLoader(filterableTableHeader, valueIndex, column, rows, valueComparator, filterEditor);
+      popupMenu.addPopupMenuListener(new PopupMenuListener() {
+        public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+        }
+        public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+          filterEditorLoader.cancel();
         }
-        if(o2 == null) {
-          return 1;
+        public void popupMenuCanceled(PopupMenuEvent e) {
         }
-        // TODO: I am not sure how to get the string representation used by the collator.
-        if(valueComparator instanceof Collator) {
-          if(!(o1 instanceof String)) {
-            o1 = o1.toString();
+      });
+      filterEditorLoader.start();
+    } else {
+      boolean isCollectingMetrics = filterableTableHeader.isCollectingMetrics();
+      long startNanos = isCollectingMetrics? System.nanoTime(): 0;
+      valueIndex.validate();
+      int idCount = valueIndex.getIdCount();
+      int[] idToRowCount = new int[idCount];
+      int valueCount = 0;
+      if(rows.length == valueIndex.getRowCount()) {
+        // All the rows are requested, so the counts of the index apply.
+        for(int id=0; id<idCount; id++) {
+          idToRowCount[id] = valueIndex.getCount(id);
+          if(idToRowCount[id] > 0) {
+            valueCount++;
           }
-          if(!(o2 instanceof String)) {
-            o2 = o2.toString();
+        }
+      } else {
+        for(int i=0; i<rows.length; i++) {
+          if(idToRowCount[valueIndex.getId(rows[i])]++ == 0) {
+            valueCount++;
           }
         }
-        return valueComparator.compare(o1, o2);
       }
-    });
-    JPopupMenu popupMenu = new JPopupMenu();
-    popupMenu.setLayout(new BorderLayout());
-    FilterEditor filterEditor = new FilterEditor(column, filterableTableHeader, this, popupMenu, values, valueToTextMap);
+      long scanEndNanos = isCollectingMetrics? System.nanoTime(): 0;
+      int[] sortedIds = valueIndex.getSortedIds(valueComparator);
+      long sortEndNanos = isCollectingMetrics? System.nanoTime(): 0;
+      Object[] values = new Object[valueCount];
+      String[] texts = new String[valueCount];
+      int[] counts = new int[valueCount];
+      int index = 0;
+      for(int id: sortedIds) {
+        if(idToRowCount[id] > 0) {
+          values[index] = valueIndex.getValue(id);
+          texts[index] = valueIndex.getText(id);
+          counts[index] = idToRowCount[id];
+          index++;
+        }
+      }
+      filterEditor = new FilterEditor(column, filterableTableHeader, this, popupMenu, values, texts, counts, false);
+      if(isCollectingMetrics) {
+        filterableTableHeader.notifyFilterEditorLoaded(column, scanEndNanos - startNanos, sortEndNanos - scanEndNanos, System.nanoTime() - sortEndNanos);
+      }
+    }
     popupMenu.add(filterEditor, BorderLayout.CENTER);
     return popupMenu;
   }
 
+  private static final int LOADING_CHUNK_SIZE = 10000;
+  private static final int LOADING_PUBLISH_DELAY = 250;
+
+  private static ExecutorService loadingExecutor;
+
+  private static synchronized ExecutorService getLoadingExecutor() {
+    if(loadingExecutor == null) {
+      loadingExecutor = new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Table filter loader");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return loadingExecutor;
+  }
+
+  /**
+   * Collect and sort the values of a filter editor in the background.<br>
+   * The table model is only accessed from the event dispatch thread: the values are read in chunks, which are then processed in the background. The conversion of the new values to text also happens when reading the next chunk, because subclasses may override the conversion in a way that is not thread-safe.
+   */
+  private class FilterEditorLoader implements Runnable {
+
+    private FilterableTableHeader filterableTableHeader;
+    private TableColumnValueIndex valueIndex;
+    private TableModel tableModel;
+    private int column;
+    private int[] rows;
+    private Comparator<Object> valueComparator;
+    private FilterEditor filterEditor;
+
+    private volatile boolean isCancelled;
+    private Future<?> future;
+    private int modificationCount;
+    private boolean isScanning;
+
+    private Map<Object, Integer> valueToIdMap;
+    private Object[] idToValue;
+    private String[] idToText;
+    private int[] idToCount;
+    private int[] idToSampleRow;
+    private int idCount;
+    private int textCount;
+    private int[] rowToId;
+    private int rowCount;
+    private Object[] chunkValues;
+
+    private int[] idToRowCount;
+    private int[] presentIds;
+    private int presentIdCount;
+    private int publishedIdCount;
+    private long lastPublishTime;
+
+    private boolean isCollectingMetrics;
+    private long scanNanos;
+    private long sortNanos;
+
+    public FilterEditorLoader(FilterableTableHeader filterableTableHeader, TableColumnValueIndex valueIndex, int column, int[] rows, Comparator<Object> valueComparator, FilterEditor filterEditor) {
+      this.filterableTableHeader = filterableTableHeader;
+      this.valueIndex = valueIndex;
+      this.tableModel = valueIndex.getTableModel();
+      this.column = column;
+      this.rows = rows;
+      this.valueComparator = valueComparator;
+      this.filterEditor = filterEditor;
+    }
+
+    public void start() {
+      isCollectingMetrics = filterableTableHeader.isCollectingMetrics();
+      long startNanos = isCollectingMetrics? System.nanoTime(): 0;
+      modificationCount = valueIndex.getModificationCount();
+      isScanning = !valueIndex.isUpToDate();
+      if(isScanning) {
+        rowCount = tableModel.getRowCount();
+        valueToIdMap = new HashMap<Object, Integer>();
+        idToValue = new Object[16];
+        idToText = new String[16];
+        idToCount = new int[16];
+        idToSampleRow = new int[16];
+        rowToId = new int[Math.max(16, rowCount)];
+        idToRowCount = new int[16];
+        presentIds = new int[16];
+      } else {
+        // The index only lacks the sort order: work on a copy of its values.
+        idCount = valueIndex.getIdCount();
+        idToValue = new Object[idCount];
+        idToText = new String[idCount];
+        for(int id=0; id<idCount; id++) {
+          idToValue[id] = valueIndex.getValue(id);
+          idToText[id] = valueIndex.getText(id);
+        }
+        textCount = idCount;
+        idToRowCount = new int[idCount];
+        presentIds = new int[Math.max(16, idCount)];
+        for(int i=0; i<rows.length; i++) {
+          int id = valueIndex.getId(rows[i]);
+          if(idToRowCount[id]++ == 0) {
+            presentIds[presentIdCount++] = id;
+          }
+        }
+        publish();
+      }
+      if(isCollectingMetrics) {
+        scanNanos = System.nanoTime() - startNanos;
+      }
+      future = getLoadingExecutor().submit(this);
+    }
+
+    public void cancel() {
+      isCancelled = true;
+      if(future != null) {
+        future.cancel(true);
+      }
+    }
+
+    public void run() {
+      try {
+        long startNanos = isCollectingMetrics? System.nanoTime(): 0;
+        if(isScanning) {
+          scan();
+        }
+        if(isCancelled) {
+          return;
+        }
+        long scanEndNanos = isCollectingMetrics? System.nanoTime(): 0;
+        Comparator<Object> comparator = valueComparator;
+        if(comparator instanceof Collator) {
+          // Collators are not thread-safe, and the sorter may use it at the same time.
+          @SuppressWarnings("unchecked")
+          Comparator<Object> collatorClone = (Comparator<Object>)((Collator)comparator).clone();
+          comparator = collatorClone;
+        }
+        final int[] sortedIds = TableColumnValueIndex.sortIds(idToValue, idCount, comparator, isCollectingInParallel(tableModel, rows.length));
+        if(isCancelled) {
+          return;
+        }
+        if(isCollectingMetrics) {
+          // The scan time includes the reading of the model on the event dispatch thread.
+          scanNanos += scanEndNanos - startNanos;
+          sortNanos = System.nanoTime() - scanEndNanos;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+            complete(sortedIds);
+          }
+        });
+      } catch(InterruptedException e) {
+        // The popup was closed.
+      } catch(InvocationTargetException e) {
+        // Runnables can only throw runtime exceptions and errors.
+        fail(e.getCause());
+      } catch(RuntimeException e) {
+        fail(e);
+      } catch(Error e) {
+        fail(e);
+      }
+    }
+
+    /**
+     * Stop loading and report the failure on the event dispatch thread, like a synchronous loading would.
+     */
+    private void fail(final Throwable t) {
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          if(!isCancelled) {
+            // The values loaded so far must not be applied as if they were complete, so only the custom filters remain usable.
+            filterEditor.setValues(new Object[0], new String[0], new int[0], false);
+          }
+          if(t instanceof Error) {
+            throw (Error)t;
+          }
+          throw (RuntimeException)t;
+        }
+      });
+    }
+
+    private void scan() throws InterruptedException, InvocationTargetException {
+      boolean[] isRowRequested = new boolean[rowCount];
+      for(int i=0; i<rows.length; i++) {
+        int row = rows[i];
+        if(row < rowCount) {
+          isRowRequested[row] = true;
+        }
+      }
+      chunkValues = new Object[Math.min(LOADING_CHUNK_SIZE, rowCount)];
+      for(int start=0; start<rowCount; start+=LOADING_CHUNK_SIZE) {
+        final int chunkStart = start;
+        final int chunkEnd = Math.min(start + LOADING_CHUNK_SIZE, rowCount);
+        SwingUtilities.invokeAndWait(new Runnable() {
+          public void run() {
+            convertTexts();
+            publish();
+            int modelRowCount = tableModel.getRowCount();
+            for(int row=chunkStart; row<chunkEnd; row++) {
+              chunkValues[row - chunkStart] = row < modelRowCount? tableModel.getValueAt(row, column): null;
+            }
+          }
+        });
+        if(isCancelled) {
+          return;
+        }
+        for(int row=chunkStart; row<chunkEnd; row++) {
+          Object value = chunkValues[row - chunkStart];
+          Integer id_ = valueToIdMap.get(value);
+          int id;
+          if(id_ == null) {
+            if(idCount == idToValue.length) {
+              int newCapacity = idCount * 2;
+              idToValue = Arrays.copyOf(idToValue, newCapacity);
+              idToText = Arrays.copyOf(idToText, newCapacity);
+              idToCount = Arrays.copyOf(idToCount, newCapacity);
+              idToSampleRow = Arrays.copyOf(idToSampleRow, newCapacity);
+              idToRowCount = Arrays.copyOf(idToRowCount, newCapacity);
+              presentIds = Arrays.copyOf(presentIds, newCapacity);
+            }
+            id = idCount++;
+            idToValue[id] = value;
+            idToSampleRow[id] = row;
+            valueToIdMap.put(value, id);
+          } else {
+            id = id_;
+          }
+          idToCount[id]++;
+          rowToId[row] = id;
+          if(isRowRequested[row] && idToRowCount[id]++ == 0) {
+            presentIds[presentIdCount++] = id;
+          }
+        }
+      }
+      chunkValues = null;
+      SwingUtilities.invokeAndWait(new Runnable() {
+        public void run() {
+          convertTexts();
+          publish();
+        }
+      });
+    }
+
+    private void convertTexts() {
+      for(; textCount<idCount; textCount++) {
+        idToText[textCount] = convertToString(idToValue[textCount], tableModel, idToSampleRow[textCount], column);
+      }
+    }
+
+    private void publish() {
+      if(isCancelled || presentIdCount == publishedIdCount || System.currentTimeMillis() - lastPublishTime < LOADING_PUBLISH_DELAY) {
+        return;
+      }
+      publishedIdCount = presentIdCount;
+      lastPublishTime = System.currentTimeMillis();
+      Object[] values = new Object[presentIdCount];
+      String[] texts = new String[presentIdCount];
+      int[] counts = new int[presentIdCount];
+      for(int i=0; i<presentIdCount; i++) {
+        int id = presentIds[i];
+        values[i] = idToValue[id];
+        texts[i] = idToText[id];
+        counts[i] = idToRowCount[id];
+      }
+      filterEditor.setValues(values, texts, counts, true);
+    }
+
+    private void complete(int[] sortedIds) {
+      if(isCancelled) {
+        return;
+      }
+      long startNanos = isCollectingMetrics? System.nanoTime(): 0;
+      if(valueIndex.getModificationCount() == modificationCount) {
+        // The model did not change while loading, so the result can be reused by other popups.
+        if(isScanning) {
+          if(!valueIndex.isUpToDate() && rowCount == tableModel.getRowCount()) {
+            valueIndex.install(valueToIdMap, idToValue, idToText, idToCount, idCount, rowToId, rowCount);
+            valueIndex.installSortedIds(sortedIds, valueComparator);
+          }
+        } else if(valueIndex.isUpToDate()) {
+          valueIndex.installSortedIds(sortedIds, valueComparator);
+        }
+      }
+      Object[] values = new Object[presentIdCount];
+      String[] texts = new String[presentIdCount];
+      int[] counts = new int[presentIdCount];
+      int index = 0;
+      for(int id: sortedIds) {
+        if(idToRowCount[id] > 0) {
+          values[index] = idToValue[id];
+          texts[index] = idToText[id];
+          counts[index] = idToRowCount[id];
+          index++;
+        }
+      }
+      filterEditor.setValues(values, texts, counts, false);
+      if(isCollectingMetrics) {
+        filterableTableHeader.notifyFilterEditorLoaded(column, scanNanos, sortNanos, System.nanoTime() - startNanos);
+      }
+    }
+
+  }
+
+  /**
+   * The formats of a thread for a given locale, because formats are not thread-safe.
+   */
+  private static class Formats {
+
+    private Locale locale;
+
+    public Formats(Locale locale) {
+      this.locale = locale;
+    }
+
+    public Locale getLocale() {
+      return locale;
+    }
+
+    /**
+     * Indicate whether a number format may produce non-breakable spaces or special negative signs, which cannot be typed in the filter field.
+     */
+    private static boolean isWithUntypableChars(NumberFormat numberFormat) {
+      if(!(numberFormat instanceof DecimalFormat)) {
+        return true;
+      }
+      DecimalFormat decimalFormat = (DecimalFormat)numberFormat;
+      return decimalFormat.getDecimalFormatSymbols().getGroupingSeparator() == '\u00A0' || decimalFormat.getDecimalFormatSymbols().getMinusSign() == '\u2212' || decimalFormat.getNegativePrefix().indexOf('\u2212') >= 0;
+    }
+
+    private NumberFormat integerFormat;
+    private boolean isIntegerFormatWithUntypableChars;
+
+    public NumberFormat getIntegerFormat() {
+      if(integerFormat == null) {
+        integerFormat = DecimalFormat.getIntegerInstance(locale);
+        isIntegerFormatWithUntypableChars = isWithUntypableChars(integerFormat);
+      }
+      return integerFormat;
+    }
+
+    public boolean isIntegerFormatWithUntypableChars() {
+      getIntegerFormat();
+      return isIntegerFormatWithUntypableChars;
+    }
+
+    private NumberFormat doubleFormat;
+    private boolean isDoubleFormatWithUntypableChars;
+
+    public NumberFormat getDoubleFormat() {
+      if(doubleFormat == null) {
+        doubleFormat = DecimalFormat.getInstance(locale);
+        isDoubleFormatWithUntypableChars = isWithUntypableChars(doubleFormat);
+      }
+      return doubleFormat;
+    }
+
+    public boolean isDoubleFormatWithUntypableChars() {
+      getDoubleFormat();
+      return isDoubleFormatWithUntypableChars;
+    }
+
+    private DateFormat dateFormat;
+
+    public DateFormat getDateFormat() {
+      if(dateFormat == null) {
+        dateFormat = DateFormat.getDateInstance(DateFormat.SHORT, locale);
+      }
+      return dateFormat;
+    }
+
+    private DateFormat dateTimeFormat;
+
+    public DateFormat getDateTimeFormat() {
+      if(dateTimeFormat == null) {
+        dateTimeFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale);
+      }
+      return dateTimeFormat;
+    }
+
+  }
+
+  private ThreadLocal<Formats> formatsThreadLocal = new ThreadLocal<Formats>();
+
+  /**
+   * Get the formats of the current thread, which are created again when the default locale for formatting has changed.
+   */
+  private Formats getFormats() {
+    Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+    Formats formats = formatsThreadLocal.get();
+    if(formats == null || !formats.getLocale().equals(locale)) {
+      formats = new Formats(locale);
+      formatsThreadLocal.set(formats);
+    }
+    return formats;
+  }
+
+  private static final int TEXT_CACHE_SIZE = 4096;
+
+  /**
+   * The texts of recently converted values for a given locale, the least recently used ones being removed once the cache is full. Access must be synchronized on the cache.
+   */
+  private static class TextCache extends LinkedHashMap<Object, String> {
+
+    private Locale locale;
+
+    public TextCache(Locale locale) {
+      super(16, 0.75f, true);
+      this.locale = locale;
+    }
+
+    public Locale getLocale() {
+      return locale;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Object, String> eldest) {
+      return size() > TEXT_CACHE_SIZE;
+    }
+
+  }
+
+  private volatile TextCache textCache;
+
+  /**
+   * Convert a value to the text that is shown in the filter popup and that text filters match. The default implementation can be called from any thread.
+   */
   protected String convertToString(Object value, TableModel tableModel, int row, int column) {
     if(value == null) {
       return "(empty)";
     }
+    if(!(value instanceof Number || value instanceof Date)) {
+      return String.valueOf(value);
+    }
+    // Formatting is costly, and values tend to be converted again when the values of the popups are collected anew.
+    Formats formats = getFormats();
+    TextCache textCache = this.textCache;
+    if(textCache == null || !textCache.getLocale().equals(formats.getLocale())) {
+      textCache = new TextCache(formats.getLocale());
+      this.textCache = textCache;
+    }
+    String text;
+    synchronized(textCache) {
+      text = textCache.get(value);
+    }
+    if(text == null) {
+      // Formatting happens outside of the lock, so that concurrent conversions at worst format a value twice.
+      text = format(formats, value);
+      synchronized(textCache) {
+        // Dates are mutable, so the key is a copy.
+        textCache.put(value instanceof Date? ((Date)value).clone(): value, text);
+      }
+    }
+    return text;
+  }
+
+  private static String format(Formats formats, Object value) {
     if(value instanceof Number) {
       String text;
+      boolean isWithUntypableChars;
       if(value instanceof Integer || value instanceof Long) {
-        text = getIntegerFormat().format(value);
+        text = formats.getIntegerFormat().format(value);
+        isWithUntypableChars = formats.isIntegerFormatWithUntypableChars();
       } else {
-        text = getDoubleFormat().format(value);
+        text = formats.getDoubleFormat().format(value);
+        isWithUntypableChars = formats.isDoubleFormatWithUntypableChars();
+      }
+      if(!isWithUntypableChars) {
+        return text;
       }
       // Replace non-breakable spaces by regular spaces.
       // Replace special negative sign by regular negative sign.
-      boolean isWithUntypableChars = false;
+      isWithUntypableChars = false;
       for(int i=text.length()-1; i>=0; i--) {
         switch(text.charAt(i)) {
           case '\u00A0':
@@ -746,46 +2290,381 @@ public class DefaultTableHeaderFilter implements TableHeaderFilter {
       }
       return text;
     }
-    if(value instanceof Date) {
-      return getDateFormat().format(value);
+    return formats.getDateFormat().format(value);
+  }
+
+  private String convertToString(DatePeriod datePeriod) {
+    Formats formats = getFormats();
+    Date startDate = new Date(datePeriod.getStartMillis());
+    if(datePeriod.getDateGrouping() == DateGrouping.DAY) {
+      return formats.getDateFormat().format(startDate);
+    }
+    return formats.getDateTimeFormat().format(startDate);
+  }
+
+  public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry, int column) {
+    FilterData filterData = getFilterData(column);
+    return filterData == null || filterData.include(entry, column);
+  }
+  
+  public ColumnValueFilter getColumnValueFilter(int column) {
+    FilterData filterData = getFilterData(column);
+    if(filterData == null) {
+      return null;
+    }
+    CustomFilter customFilter = filterData.getCustomFilter();
+    if(isIndexingNumbers && customFilter instanceof RangeCustomFilter) {
+      return new IndexedCustomFilter((RangeCustomFilter)customFilter);
     }
-    return String.valueOf(value);
+    return filterData.getValueFilter(columnToValueIndexMap.get(column));
   }
 
-  private NumberFormat integerFormat;
+  public void clearFilter(int column) {
+    setFilterData(column, null);
+  }
 
-  private NumberFormat getIntegerFormat() {
-    if(integerFormat == null) {
-      integerFormat = DecimalFormat.getIntegerInstance();
+  /**
+   * Set the values that the filter of a column accepts, replacing its current filter. The header must then be notified with notifyFilterChanged().
+   * @param column the column in model coordinates.
+   * @param acceptedValues the values to accept, which are compared to the values of the model without date grouping, or null to clear the filter.
+   */
+  public void setAcceptedValues(int column, Collection<?> acceptedValues) {
+    if(acceptedValues == null) {
+      setFilterData(column, null);
+      return;
     }
-    return integerFormat;
+    FilterData filterData = new FilterData();
+    filterData.setAcceptedValueSet(new HashSet<Object>(acceptedValues), DateGrouping.NONE, null);
+    setFilterData(column, filterData);
   }
 
-  private NumberFormat doubleFormat;
+  private static final byte FILTER_STATE_VERSION = 1;
+
+  private static final byte CUSTOM_FILTER_NONE = 0;
+  private static final byte CUSTOM_FILTER_NUMBER = 1;
+  private static final byte CUSTOM_FILTER_DATE = 2;
+  private static final byte CUSTOM_FILTER_TEXT = 3;
 
-  private NumberFormat getDoubleFormat() {
-    if(doubleFormat == null) {
-      doubleFormat = DecimalFormat.getInstance();
+  /**
+   * Save the filters of all the columns in a compact binary form. Each distinct accepted value is written once and referenced by an ID.
+   * @return the filter state.
+   * @throws NotSerializableException if an accepted value is not a number, a string, a boolean, a character or a date.
+   * @throws IOException if an accepted value cannot be written.
+   */
+  public byte[] saveFilterState() throws IOException {
+    Map<Object, Integer> valueToIdMap = new HashMap<Object, Integer>();
+    List<Object> valueList = new ArrayList<Object>();
+    for(FilterData filterData: columnToFilterDataMap.values()) {
+      Set<Object> acceptedValueSet = filterData.getAcceptedValueSet();
+      if(acceptedValueSet != null) {
+        for(Object value: acceptedValueSet) {
+          if(!valueToIdMap.containsKey(value)) {
+            valueToIdMap.put(value, valueList.size());
+            valueList.add(value);
+          }
+        }
+      }
+    }
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    out.writeByte(FILTER_STATE_VERSION);
+    writeVarInt(out, valueList.size());
+    for(Object value: valueList) {
+      writeValue(out, value);
+    }
+    writeVarInt(out, columnToFilterDataMap.size());
+    for(Map.Entry<Integer, FilterData> entry: columnToFilterDataMap.entrySet()) {
+      writeVarInt(out, entry.getKey());
+      FilterData filterData = entry.getValue();
+      NumberCustomFilter numberFilter = filterData.getNumberFilter();
+      DateCustomFilter dateFilter = filterData.getDateFilter();
+      TextCustomFilter textFilter = filterData.getTextFilter();
+      if(numberFilter != null) {
+        out.writeByte(CUSTOM_FILTER_NUMBER);
+        writeNumberCondition(out, numberFilter.getOperator1(), numberFilter.getValue1());
+        writeNumberCondition(out, numberFilter.getOperator2(), numberFilter.getValue2());
+        out.writeBoolean(numberFilter.isOr());
+      } else if(dateFilter != null) {
+        out.writeByte(CUSTOM_FILTER_DATE);
+        Date from = dateFilter.getFrom();
+        out.writeBoolean(from != null);
+        out.writeLong(from == null? 0: from.getTime());
+        Date to = dateFilter.getTo();
+        out.writeBoolean(to != null);
+        out.writeLong(to == null? 0: to.getTime());
+      } else if(textFilter != null) {
+        out.writeByte(CUSTOM_FILTER_TEXT);
+        out.writeByte(textFilter.getOperator().ordinal());
+        writeString(out, textFilter.getText());
+        out.writeBoolean(textFilter.isCaseSensitive());
+      } else {
+        out.writeByte(CUSTOM_FILTER_NONE);
+      }
+      Set<Object> acceptedValueSet = filterData.getAcceptedValueSet();
+      out.writeBoolean(acceptedValueSet != null);
+      if(acceptedValueSet != null) {
+        out.writeByte(filterData.dateGrouping.ordinal());
+        if(filterData.dateGrouping != DateGrouping.NONE) {
+          writeString(out, filterData.timeZone.getID());
+        }
+        writeVarInt(out, acceptedValueSet.size());
+        for(Object value: acceptedValueSet) {
+          writeVarInt(out, valueToIdMap.get(value));
+        }
+      }
     }
-    return doubleFormat;
+    out.flush();
+    return baos.toByteArray();
   }
 
-  private DateFormat dateFormat;
+  /**
+   * Restore the filters of all the columns from a state obtained by saveFilterState(), replacing the current filters. Only the columns of the header that use this filter are restored, and the header is notified of all the modified columns at once.
+   * @param filterableTableHeader the header using this filter.
+   * @param filterState the filter state.
+   * @throws IOException if the state cannot be read, in which case the current filters are unchanged.
+   */
+  public void restoreFilterState(FilterableTableHeader filterableTableHeader, byte[] filterState) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(filterState));
+    Map<Integer, FilterData> newColumnToFilterDataMap = new HashMap<Integer, FilterData>();
+    try {
+      if(in.readByte() != FILTER_STATE_VERSION) {
+        throw new IOException("Unsupported filter state version!");
+      }
+      Object[] values = new Object[readLength(in)];
+      for(int i=0; i<values.length; i++) {
+        values[i] = readValue(in);
+      }
+      for(int i=readLength(in); i>0; i--) {
+        int column = readVarInt(in);
+        NumberCustomFilter numberFilter = null;
+        DateCustomFilter dateFilter = null;
+        TextCustomFilter textFilter = null;
+        Set<Object> acceptedValueSet = null;
+        DateGrouping dateGrouping = DateGrouping.NONE;
+        TimeZone timeZone = null;
+        byte customFilterType = in.readByte();
+        switch(customFilterType) {
+          case CUSTOM_FILTER_NONE:
+            break;
+          case CUSTOM_FILTER_NUMBER: {
+            numberFilter = new NumberCustomFilter();
+            Operator operator1 = readOperator(in);
+            numberFilter.setFilter1(operator1, readNumberConditionValue(in));
+            Operator operator2 = readOperator(in);
+            Double value2 = readNumberConditionValue(in);
+            numberFilter.setFilter2(operator2, value2, in.readBoolean());
+            break;
+          }
+          case CUSTOM_FILTER_DATE: {
+            boolean hasFrom = in.readBoolean();
+            long fromMillis = in.readLong();
+            boolean hasTo = in.readBoolean();
+            long toMillis = in.readLong();
+            dateFilter = new DateCustomFilter(hasFrom? new Date(fromMillis): null, hasTo? new Date(toMillis): null);
+            break;
+          }
+          case CUSTOM_FILTER_TEXT: {
+            TextOperator operator = TextOperator.values()[in.readByte()];
+            String text = readString(in);
+            textFilter = new TextCustomFilter(column, operator, text, in.readBoolean());
+            break;
+          }
+          default:
+            throw new IOException("Unknown custom filter type: " + customFilterType);
+        }
+        if(in.readBoolean()) {
+          dateGrouping = DateGrouping.values()[in.readByte()];
+          if(dateGrouping != DateGrouping.NONE) {
+            timeZone = TimeZone.getTimeZone(readString(in));
+          }
+          int size = readLength(in);
+          acceptedValueSet = new HashSet<Object>(Math.max(16, size * 4 / 3 + 1));
+          for(int j=0; j<size; j++) {
+            acceptedValueSet.add(values[readVarInt(in)]);
+          }
+        }
+        FilterData filterData = new FilterData();
+        // The accepted values must be set first as they clear the custom filters.
+        filterData.setAcceptedValueSet(acceptedValueSet, dateGrouping, timeZone);
+        filterData.setNumberFilter(numberFilter);
+        filterData.setDateFilter(dateFilter);
+        filterData.setTextFilter(textFilter);
+        // The state may come from another table, or the column may use another filter.
+        if(filterableTableHeader.getHeaderFilter(column) == this) {
+          newColumnToFilterDataMap.put(column, filterData);
+        }
+      }
+    } catch(RuntimeException e) {
+      // Invalid ordinals, IDs or patterns.
+      throw new IOException("Invalid filter state!", e);
+    }
+    Set<Integer> columnSet = new HashSet<Integer>(columnToFilterDataMap.keySet());
+    columnSet.addAll(newColumnToFilterDataMap.keySet());
+    columnToFilterDataMap = newColumnToFilterDataMap;
+    int[] columns = new int[columnSet.size()];
+    int i = 0;
+    for(int column: columnSet) {
+      if(filterableTableHeader.getHeaderFilter(column) == this) {
+        columns[i++] = column;
+      }
+    }
+    columns = Arrays.copyOf(columns, i);
+    TableHeaderFilter[] headerFilters = new TableHeaderFilter[i];
+    Arrays.fill(headerFilters, this);
+    filterableTableHeader.notifyFilterChanged(columns, headerFilters);
+  }
 
-  private DateFormat getDateFormat() {
-    if(dateFormat == null) {
-      dateFormat = DateFormat.getDateInstance(DateFormat.SHORT);
+  private static void writeNumberCondition(DataOutput out, Operator operator, Double value) throws IOException {
+    out.writeByte(operator == null? -1: operator.ordinal());
+    out.writeBoolean(value != null);
+    if(value != null) {
+      out.writeDouble(value);
     }
-    return dateFormat;
   }
 
-  public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry, int column) {
-    FilterData filterData = getFilterData(column);
-    return filterData == null || filterData.include(entry, column);
+  private static Operator readOperator(DataInput in) throws IOException {
+    byte ordinal = in.readByte();
+    return ordinal < 0? null: Operator.values()[ordinal];
   }
-  
-  public void clearFilter(int column) {
-    setFilterData(column, null);
+
+  private static Double readNumberConditionValue(DataInput in) throws IOException {
+    return in.readBoolean()? in.readDouble(): null;
+  }
+
+  private static void writeVarInt(DataOutput out, int value) throws IOException {
+    writeVarLong(out, value & 0xFFFFFFFFL);
+  }
+
+  private static int readVarInt(DataInput in) throws IOException {
+    return (int)readVarLong(in);
+  }
+
+  /**
+   * Write an unsigned value with 7 bits per byte, so that small values take a single byte.
+   */
+  private static void writeVarLong(DataOutput out, long value) throws IOException {
+    while((value & ~0x7FL) != 0) {
+      out.writeByte((int)(value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int)value);
+  }
+
+  /**
+   * Read a count or a byte length, which cannot exceed the remaining input since each element takes at least one byte.
+   */
+  private static int readLength(DataInputStream in) throws IOException {
+    int length = readVarInt(in);
+    if(length < 0 || length > in.available()) {
+      throw new IOException("Invalid length: " + length);
+    }
+    return length;
+  }
+
+  private static void writeString(DataOutput out, String s) throws IOException {
+    byte[] bytes = s.getBytes("UTF-8");
+    writeVarInt(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[readLength(in)];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private static long readVarLong(DataInput in) throws IOException {
+    long value = 0;
+    for(int shift=0; shift<64; shift+=7) {
+      byte b = in.readByte();
+      value |= (long)(b & 0x7F) << shift;
+      if((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Invalid variable length value!");
+  }
+
+  private static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+    // Zigzag encoding keeps small negative values small.
+    writeVarLong(out, (value << 1) ^ (value >> 63));
+  }
+
+  private static long readSignedVarLong(DataInput in) throws IOException {
+    long value = readVarLong(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static final byte VALUE_NULL = 0;
+  private static final byte VALUE_STRING = 1;
+  private static final byte VALUE_INTEGER = 2;
+  private static final byte VALUE_LONG = 3;
+  private static final byte VALUE_SHORT = 4;
+  private static final byte VALUE_BYTE = 5;
+  private static final byte VALUE_DOUBLE = 6;
+  private static final byte VALUE_FLOAT = 7;
+  private static final byte VALUE_BOOLEAN = 8;
+  private static final byte VALUE_CHARACTER = 9;
+  private static final byte VALUE_DATE = 10;
+  private static final byte VALUE_DATE_PERIOD = 11;
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    Class<?> valueClass = value == null? null: value.getClass();
+    if(value == null) {
+      out.writeByte(VALUE_NULL);
+    } else if(valueClass == String.class) {
+      out.writeByte(VALUE_STRING);
+      writeString(out, (String)value);
+    } else if(valueClass == Integer.class || valueClass == Long.class || valueClass == Short.class || valueClass == Byte.class) {
+      out.writeByte(valueClass == Integer.class? VALUE_INTEGER: valueClass == Long.class? VALUE_LONG: valueClass == Short.class? VALUE_SHORT: VALUE_BYTE);
+      writeSignedVarLong(out, ((Number)value).longValue());
+    } else if(valueClass == Double.class) {
+      out.writeByte(VALUE_DOUBLE);
+      out.writeDouble((Double)value);
+    } else if(valueClass == Float.class) {
+      out.writeByte(VALUE_FLOAT);
+      out.writeFloat((Float)value);
+    } else if(valueClass == Boolean.class) {
+      out.writeByte(VALUE_BOOLEAN);
+      out.writeBoolean((Boolean)value);
+    } else if(valueClass == Character.class) {
+      out.writeByte(VALUE_CHARACTER);
+      out.writeChar((Character)value);
+    } else if(valueClass == Date.class) {
+      out.writeByte(VALUE_DATE);
+      writeSignedVarLong(out, ((Date)value).getTime());
+    } else if(valueClass == DatePeriod.class) {
+      out.writeByte(VALUE_DATE_PERIOD);
+      out.writeByte(((DatePeriod)value).getDateGrouping().ordinal());
+      writeSignedVarLong(out, ((DatePeriod)value).getPeriod());
+    } else {
+      throw new NotSerializableException(valueClass.getName());
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch(type) {
+      case VALUE_NULL: return null;
+      case VALUE_STRING: return readString(in);
+      case VALUE_INTEGER: return (int)readSignedVarLong(in);
+      case VALUE_LONG: return readSignedVarLong(in);
+      case VALUE_SHORT: return (short)readSignedVarLong(in);
+      case VALUE_BYTE: return (byte)readSignedVarLong(in);
+      case VALUE_DOUBLE: return in.readDouble();
+      case VALUE_FLOAT: return in.readFloat();
+      case VALUE_BOOLEAN: return in.readBoolean();
+      case VALUE_CHARACTER: return in.readChar();
+      case VALUE_DATE: return new Date(readSignedVarLong(in));
+      case VALUE_DATE_PERIOD: {
+        byte ordinal = in.readByte();
+        if(ordinal < 0 || ordinal >= DateGrouping.values().length) {
+          throw new IOException("Invalid date grouping: " + ordinal);
+        }
+        return new DatePeriod(DateGrouping.values()[ordinal], readSignedVarLong(in));
+      }
+    }
+    throw new IOException("Unknown value type: " + type);
   }
 
 }
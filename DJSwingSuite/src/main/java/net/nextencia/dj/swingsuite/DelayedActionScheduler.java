@@ -0,0 +1,131 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * A scheduler of delayed actions that run in the event dispatch thread. Actions are identified by a key, so that repeated requests for the same key result in a single execution.<br>
+ * All the delays are handled by a single thread, which is started on first use and stops when idle.
+ * @author Christopher Deckers
+ */
+class DelayedActionScheduler {
+
+  private DelayedActionScheduler() {
+  }
+
+  private static class DelayedAction implements Runnable {
+
+    private Object key;
+    private Runnable runnable;
+    private ScheduledFuture<?> future;
+
+    public DelayedAction(Object key, Runnable runnable) {
+      this.key = key;
+      this.runnable = runnable;
+    }
+
+    public void run() {
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          Runnable runnable;
+          synchronized(KEY_TO_ACTION_MAP) {
+            // The action may have been cancelled or superseded while waiting for the event dispatch thread.
+            if(KEY_TO_ACTION_MAP.get(key) != DelayedAction.this) {
+              return;
+            }
+            KEY_TO_ACTION_MAP.remove(key);
+            runnable = DelayedAction.this.runnable;
+          }
+          runnable.run();
+        }
+      });
+    }
+
+  }
+
+  private static final Map<Object, DelayedAction> KEY_TO_ACTION_MAP = new HashMap<Object, DelayedAction>();
+
+  private static ScheduledThreadPoolExecutor executor;
+
+  private static ScheduledThreadPoolExecutor getExecutor() {
+    if(executor == null) {
+      executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Swing Suite delayed action scheduler");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executor.setKeepAliveTime(10, TimeUnit.SECONDS);
+      executor.allowCoreThreadTimeOut(true);
+      executor.setRemoveOnCancelPolicy(true);
+    }
+    return executor;
+  }
+
+  private static void schedule(Object key, int delay, Runnable runnable) {
+    DelayedAction action = new DelayedAction(key, runnable);
+    KEY_TO_ACTION_MAP.put(key, action);
+    action.future = getExecutor().schedule(action, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Run an action after a delay during which no other action is requested for the same key. Each request postpones the pending action, which is replaced by the new one.
+   * @param key the key identifying the action.
+   * @param delay the delay in milliseconds.
+   * @param runnable the action to run in the event dispatch thread.
+   */
+  public static void debounce(Object key, int delay, Runnable runnable) {
+    synchronized(KEY_TO_ACTION_MAP) {
+      DelayedAction action = KEY_TO_ACTION_MAP.get(key);
+      if(action != null) {
+        action.future.cancel(false);
+      }
+      schedule(key, delay, runnable);
+    }
+  }
+
+  /**
+   * Run an action after a delay, where requests for the same key that happen before the action runs are merged: the pending action keeps its schedule but the latest runnable is the one that runs.
+   * @param key the key identifying the action.
+   * @param delay the delay in milliseconds.
+   * @param runnable the action to run in the event dispatch thread.
+   */
+  public static void coalesce(Object key, int delay, Runnable runnable) {
+    synchronized(KEY_TO_ACTION_MAP) {
+      DelayedAction action = KEY_TO_ACTION_MAP.get(key);
+      if(action != null) {
+        action.runnable = runnable;
+        return;
+      }
+      schedule(key, delay, runnable);
+    }
+  }
+
+  /**
+   * Cancel the pending action of a key, if any.
+   * @param key the key identifying the action.
+   */
+  public static void cancel(Object key) {
+    synchronized(KEY_TO_ACTION_MAP) {
+      DelayedAction action = KEY_TO_ACTION_MAP.remove(key);
+      if(action != null) {
+        action.future.cancel(false);
+      }
+    }
+  }
+
+}
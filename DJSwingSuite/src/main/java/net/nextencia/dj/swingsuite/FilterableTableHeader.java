@@ -15,18 +15,25 @@ import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.EventListener;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.swing.ImageIcon;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
+import javax.swing.DefaultRowSorter;
 import javax.swing.JTable;
 import javax.swing.RowFilter;
+import javax.swing.RowSorter;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
@@ -44,6 +51,36 @@ public class FilterableTableHeader extends JTableHeader {
     public void clearFilter(int column);
   }
 
+  public static interface ColumnValueFilter {
+    /**
+     * @param row the row in model coordinates.
+     * @param value the value of the column at that row.
+     */
+    public boolean include(int row, Object value);
+  }
+
+  /**
+   * A value filter that can also compute all the rows it accepts at once, for example using an index of the column.
+   */
+  public static interface ColumnRowSetFilter extends ColumnValueFilter {
+    /**
+     * @return a new bit set of the accepted rows in model coordinates, or null to evaluate the rows one by one.
+     */
+    public BitSet getAcceptedRows(TableModel tableModel, int column);
+  }
+
+  /**
+   * A header filter that can express its filtering as a test of the value of the column, which lets the row filter evaluate it without going through the row entries.
+   */
+  public interface CompilableTableHeaderFilter extends TableHeaderFilter {
+    /**
+     * Get a filter of the values of a column, reflecting the current state of the filter. It is called when the filters change, and its result is used until the next change.
+     * @param column the column in model coordinates.
+     * @return the value filter, or null to use the include method for that column.
+     */
+    public ColumnValueFilter getColumnValueFilter(int column);
+  }
+
   private static final ImageIcon FILTER_ICON = new ImageIcon(FilterableTableHeader.class.getResource("resource/TableColumnFilter16x12.png"));
   private static final ImageIcon FILTER_ACTIVE_ICON = new ImageIcon(FilterableTableHeader.class.getResource("resource/TableColumnFilterOn16x12.png"));
 
@@ -298,28 +335,7 @@ public class FilterableTableHeader extends JTableHeader {
         rows[i] = i;
       }
     } else {
-      List<Integer> rowList = new ArrayList<Integer>();
-      FilterEntry filterEntry = new FilterEntry();
-      for(int i=model.getRowCount()-1; i>=0; i--) {
-        filterEntry.setModelIndex(i);
-        boolean isIncluded = true;
-        for(int j=0; j<activeFilterIndexes.length; j++) {
-          int filterColumn = activeFilterIndexes[j];
-          if(activeFilterIndexes[j] != modelColumn) {
-            if(!headerFilters[filterColumn].include(filterEntry, filterColumn)) {
-              isIncluded = false;
-              break;
-            }
-          }
-        }
-        if(isIncluded) {
-          rowList.add(i);
-        }
-      }
-      rows = new int[rowList.size()];
-      for(int i=0; i<rows.length; i++) {
-        rows[i] = rowList.get(i);
-      }
+      rows = filterRowSets.getRows(model, modelColumn);
     }
     JPopupMenu popupMenu = headerFilter.getFilterEditor(this, model, modelColumn, rows, (Comparator<Object>)rowSorter.getComparator(modelColumn));
     int offset = 0;
@@ -352,9 +368,67 @@ public class FilterableTableHeader extends JTableHeader {
     });
   }
 
+  private int filterUpdateCount;
+  private Map<Integer, TableHeaderFilter> pendingColumnToHeaderFilterMap;
+  // The header filters set during a batch, which are only installed when it ends so that the active filters always have their header filter.
+  private Map<Integer, TableHeaderFilter> pendingColumnToSetHeaderFilterMap;
+
+  /**
+   * Start a batch of filter modifications. Until the batch ends, the calls to notifyFilterChanged() and setHeaderFilter() are recorded, and they are applied together when it ends with a single notification of the listeners, so that the rows are filtered only once. Batches can be nested.
+   */
+  public void beginFilterUpdate() {
+    if(filterUpdateCount++ == 0) {
+      pendingColumnToHeaderFilterMap = new LinkedHashMap<Integer, TableHeaderFilter>();
+      pendingColumnToSetHeaderFilterMap = new LinkedHashMap<Integer, TableHeaderFilter>();
+    }
+  }
+
+  /**
+   * End a batch of filter modifications, which applies them if this is the outermost batch.
+   */
+  public void endFilterUpdate() {
+    if(filterUpdateCount == 0) {
+      throw new IllegalStateException("No filter update was started!");
+    }
+    if(--filterUpdateCount > 0) {
+      return;
+    }
+    Map<Integer, TableHeaderFilter> columnToHeaderFilterMap = pendingColumnToHeaderFilterMap;
+    pendingColumnToHeaderFilterMap = null;
+    Map<Integer, TableHeaderFilter> columnToSetHeaderFilterMap = pendingColumnToSetHeaderFilterMap;
+    pendingColumnToSetHeaderFilterMap = null;
+    for(Map.Entry<Integer, TableHeaderFilter> entry: columnToSetHeaderFilterMap.entrySet()) {
+      setHeaderFilters(entry.getKey(), entry.getValue());
+    }
+    if(columnToHeaderFilterMap.isEmpty()) {
+      return;
+    }
+    int[] columns = new int[columnToHeaderFilterMap.size()];
+    TableHeaderFilter[] headerFilters = new TableHeaderFilter[columns.length];
+    int i = 0;
+    for(Map.Entry<Integer, TableHeaderFilter> entry: columnToHeaderFilterMap.entrySet()) {
+      columns[i] = entry.getKey();
+      // A header filter set during the batch is the one that is installed, even if another one was notified afterwards.
+      headerFilters[i] = columnToSetHeaderFilterMap.containsKey(columns[i])? columnToSetHeaderFilterMap.get(columns[i]): entry.getValue();
+      i++;
+    }
+    notifyFilterChanged(columns, headerFilters);
+  }
+
+  public boolean isFilterUpdating() {
+    return filterUpdateCount > 0;
+  }
+
   public void notifyFilterChanged(int[] columns, TableHeaderFilter[] headerFilters) {
-    for(int i=0; i<columns.length; i++) {
-      adjustFilterActiveIndexes(columns[i], headerFilters[i]);
+    if(filterUpdateCount > 0) {
+      for(int i=0; i<columns.length; i++) {
+        pendingColumnToHeaderFilterMap.put(columns[i], headerFilters[i]);
+      }
+      return;
+    }
+    adjustFilterActiveIndexes(columns, headerFilters);
+    if(activeFilterIndexes.length == 0) {
+      filterRowSets.dispose();
     }
     repaint();
     for(TableHeaderFilterChangeListener listener: getFilterChangeListeners()) {
@@ -365,6 +439,28 @@ public class FilterableTableHeader extends JTableHeader {
   private TableHeaderFilter[] headerFilters = new TableHeaderFilter[0];
 
   public void setHeaderFilter(int column, TableHeaderFilter headerFilter) {
+    if(filterUpdateCount > 0) {
+      pendingColumnToSetHeaderFilterMap.put(column, headerFilter);
+      pendingColumnToHeaderFilterMap.put(column, headerFilter);
+      return;
+    }
+    setHeaderFilters(column, headerFilter);
+    adjustFilterActiveIndexes(new int[] {column}, new TableHeaderFilter[] {headerFilter});
+  }
+
+  /**
+   * Get the header filter of a column, including one that is set during a batch and installed when it ends.
+   * @param column the column in model coordinates.
+   * @return the header filter, or null if the column has none.
+   */
+  public TableHeaderFilter getHeaderFilter(int column) {
+    if(filterUpdateCount > 0 && pendingColumnToSetHeaderFilterMap.containsKey(column)) {
+      return pendingColumnToSetHeaderFilterMap.get(column);
+    }
+    return column < headerFilters.length? headerFilters[column]: null;
+  }
+
+  private void setHeaderFilters(int column, TableHeaderFilter headerFilter) {
     if(headerFilters.length <= column) {
       TableHeaderFilter[] newHeaderFilters = new TableHeaderFilter[column + 1];
       System.arraycopy(headerFilters, 0, newHeaderFilters, 0, headerFilters.length);
@@ -384,51 +480,336 @@ public class FilterableTableHeader extends JTableHeader {
         headerFilters = newHeaderFilters;
       }
     }
-    adjustFilterActiveIndexes(column, headerFilter);
   }
 
-  private void adjustFilterActiveIndexes(int column, TableHeaderFilter headerFilter) {
-    for(int i=0; i<activeFilterIndexes.length; i++) {
-      if(activeFilterIndexes[i] == column) {
-        if(headerFilter != null && headerFilter.isFilterActive(column)) {
-          return;
-        }
-        int[] newActiveFilterIndexes = new int[activeFilterIndexes.length - 1];
-        System.arraycopy(activeFilterIndexes, 0, newActiveFilterIndexes, 0, i);
-        System.arraycopy(activeFilterIndexes, i + 1, newActiveFilterIndexes, i, newActiveFilterIndexes.length - i);
-        activeFilterIndexes = newActiveFilterIndexes;
-        break;
+  /**
+   * Update the active filter indexes for the given columns in a single pass. Columns that remain active keep their position, and newly active columns are appended.
+   */
+  private void adjustFilterActiveIndexes(int[] columns, TableHeaderFilter[] headerFilters) {
+    BitSet columnBitSet = new BitSet();
+    BitSet activeColumnBitSet = new BitSet();
+    for(int i=0; i<columns.length; i++) {
+      int column = columns[i];
+      filterRowSets.invalidateColumn(column);
+      columnBitSet.set(column);
+      activeColumnBitSet.set(column, headerFilters[i] != null && headerFilters[i].isFilterActive(column));
+    }
+    int[] newActiveFilterIndexes = new int[activeFilterIndexes.length + columns.length];
+    int count = 0;
+    for(int column: activeFilterIndexes) {
+      if(!columnBitSet.get(column) || activeColumnBitSet.get(column)) {
+        newActiveFilterIndexes[count++] = column;
+        activeColumnBitSet.clear(column);
       }
     }
-    if(headerFilter != null && headerFilter.isFilterActive(column)) {
-      int[] newActiveFilterIndexes = new int[activeFilterIndexes.length + 1];
-      System.arraycopy(activeFilterIndexes, 0, newActiveFilterIndexes, 0, activeFilterIndexes.length);
-      newActiveFilterIndexes[activeFilterIndexes.length] = column;
-      activeFilterIndexes = newActiveFilterIndexes;
+    for(int column: columns) {
+      if(activeColumnBitSet.get(column)) {
+        newActiveFilterIndexes[count++] = column;
+        activeColumnBitSet.clear(column);
+      }
     }
+    activeFilterIndexes = count == newActiveFilterIndexes.length? newActiveFilterIndexes: Arrays.copyOf(newActiveFilterIndexes, count);
   }
 
   private int[] activeFilterIndexes = new int[0];
 
+  /**
+   * The rows accepted by each active filter, as one bit set per column, so that a filter change only requires evaluating the column of that filter. The rows accepted by all the filters are the intersection of these bit sets.<br>
+   * The bit sets are kept up to date with the events of the table model, and they are dropped when events seem to have been missed, which includes a change of the row count. They must be updated before the table forwards the events to its row sorter, so the listener is registered after the one of the table, which is notified later by models extending AbstractTableModel. If the table may have been notified first, which is always the case for other models as their order is unknown, the row sorter filters the changed rows again once the bit sets are updated.
+   */
+  private class FilterRowSets implements TableModelListener {
+
+    private TableModel tableModel;
+    private int rowCount;
+    private BitSet[] columnToRowBitSet = new BitSet[0];
+    private ColumnValueFilter[] columnToValueFilter = new ColumnValueFilter[0];
+    private BitSet rowBitSet;
+
+    public void invalidateColumn(int column) {
+      if(column < columnToRowBitSet.length) {
+        columnToRowBitSet[column] = null;
+        columnToValueFilter[column] = null;
+      }
+      rowBitSet = null;
+    }
+
+    public void invalidate() {
+      Arrays.fill(columnToRowBitSet, null);
+      Arrays.fill(columnToValueFilter, null);
+      rowBitSet = null;
+    }
+
+    public void dispose() {
+      if(tableModel != null) {
+        tableModel.removeTableModelListener(this);
+        tableModel = null;
+      }
+      invalidate();
+    }
+
+    private void setTableModel(TableModel tableModel) {
+      if(this.tableModel != tableModel) {
+        dispose();
+        this.tableModel = tableModel;
+        tableModel.addTableModelListener(this);
+        rowCount = -1;
+      }
+      int modelRowCount = tableModel.getRowCount();
+      if(rowCount != modelRowCount) {
+        invalidate();
+        rowCount = modelRowCount;
+      }
+    }
+
+    /**
+     * Get the rows accepted by all the active filters.
+     * @return the bit set of the accepted rows, in model coordinates, which must not be modified.
+     */
+    public BitSet getRowBitSet(TableModel tableModel) {
+      setTableModel(tableModel);
+      if(rowBitSet == null) {
+        rowBitSet = computeRowBitSet(-1);
+      }
+      return rowBitSet;
+    }
+
+    /**
+     * Get the rows accepted by all the active filters except the one of a given column.
+     * @return the accepted rows, in model coordinates and in ascending order.
+     */
+    public int[] getRows(TableModel tableModel, int excludedColumn) {
+      setTableModel(tableModel);
+      BitSet rowBitSet = computeRowBitSet(excludedColumn);
+      int[] rows = new int[rowBitSet.cardinality()];
+      int i = 0;
+      for(int row=rowBitSet.nextSetBit(0); row>=0; row=rowBitSet.nextSetBit(row + 1)) {
+        rows[i++] = row;
+      }
+      return rows;
+    }
+
+    private BitSet computeRowBitSet(int excludedColumn) {
+      BitSet rowBitSet = null;
+      for(int column: activeFilterIndexes) {
+        if(column != excludedColumn) {
+          BitSet columnRowBitSet = getColumnRowBitSet(column);
+          if(rowBitSet == null) {
+            rowBitSet = (BitSet)columnRowBitSet.clone();
+          } else {
+            rowBitSet.and(columnRowBitSet);
+          }
+        }
+      }
+      if(rowBitSet == null) {
+        rowBitSet = new BitSet(rowCount);
+        rowBitSet.set(0, rowCount);
+      }
+      return rowBitSet;
+    }
+
+    private BitSet getColumnRowBitSet(int column) {
+      if(column >= columnToRowBitSet.length) {
+        int length = Math.max(column + 1, headerFilters.length);
+        columnToRowBitSet = Arrays.copyOf(columnToRowBitSet, length);
+        columnToValueFilter = Arrays.copyOf(columnToValueFilter, length);
+      }
+      BitSet columnRowBitSet = columnToRowBitSet[column];
+      if(columnRowBitSet == null) {
+        TableHeaderFilter headerFilter = headerFilters[column];
+        if(headerFilter instanceof CompilableTableHeaderFilter) {
+          columnToValueFilter[column] = ((CompilableTableHeaderFilter)headerFilter).getColumnValueFilter(column);
+        }
+        ColumnValueFilter valueFilter = columnToValueFilter[column];
+        if(valueFilter instanceof ColumnRowSetFilter && headerFilter.isFilterActive(column)) {
+          long startNanos = isCollectingMetrics? System.nanoTime(): 0;
+          columnRowBitSet = ((ColumnRowSetFilter)valueFilter).getAcceptedRows(tableModel, column);
+          if(isCollectingMetrics && columnRowBitSet != null) {
+            fireColumnEvaluated(column, rowCount, rowCount - columnRowBitSet.cardinality(), System.nanoTime() - startNanos);
+          }
+        }
+        if(columnRowBitSet == null) {
+          columnRowBitSet = new BitSet(rowCount);
+          evaluate(column, columnRowBitSet, 0, rowCount);
+        }
+        columnToRowBitSet[column] = columnRowBitSet;
+      }
+      return columnRowBitSet;
+    }
+
+    private void evaluate(int column, BitSet columnRowBitSet, int startRow, int endRow) {
+      TableHeaderFilter headerFilter = headerFilters[column];
+      if(!headerFilter.isFilterActive(column)) {
+        columnRowBitSet.set(startRow, endRow);
+        return;
+      }
+      long startNanos = isCollectingMetrics? System.nanoTime(): 0;
+      ColumnValueFilter valueFilter = columnToValueFilter[column];
+      if(valueFilter != null) {
+        for(int row=startRow; row<endRow; row++) {
+          columnRowBitSet.set(row, valueFilter.include(row, tableModel.getValueAt(row, column)));
+        }
+      } else {
+        FilterEntry filterEntry = new FilterEntry();
+        for(int row=startRow; row<endRow; row++) {
+          filterEntry.setModelIndex(row);
+          columnRowBitSet.set(row, headerFilter.include(filterEntry, column));
+        }
+      }
+      if(isCollectingMetrics && startRow < endRow) {
+        long nanos = System.nanoTime() - startNanos;
+        fireColumnEvaluated(column, endRow - startRow, endRow - startRow - columnRowBitSet.get(startRow, endRow).cardinality(), nanos);
+      }
+    }
+
+    private void adjustRowBitSet(int startRow, int endRow) {
+      if(rowBitSet == null) {
+        return;
+      }
+      for(int row=startRow; row<endRow; row++) {
+        boolean isIncluded = true;
+        for(int i=0; i<activeFilterIndexes.length && isIncluded; i++) {
+          isIncluded = columnToRowBitSet[activeFilterIndexes[i]].get(row);
+        }
+        rowBitSet.set(row, isIncluded);
+      }
+    }
+
+    /**
+     * Indicate whether the table may receive the events of the model before this listener, which is only known for models extending AbstractTableModel.
+     */
+    private boolean isNotifiedAfterTable() {
+      if(table == null) {
+        return false;
+      }
+      if(!(tableModel instanceof AbstractTableModel)) {
+        return true;
+      }
+      // The listeners are returned in the order of notification, from the last registered to the first.
+      TableModelListener[] listeners = ((AbstractTableModel)tableModel).getTableModelListeners();
+      for(int i=0; i<listeners.length; i++) {
+        if(listeners[i] == this) {
+          return false;
+        }
+        if(listeners[i] == table) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public void tableChanged(TableModelEvent e) {
+      boolean isNotifiedAfterTable = isNotifiedAfterTable();
+      tableChanged_(e);
+      if(!isNotifiedAfterTable || activeFilterIndexes.length == 0) {
+        return;
+      }
+      if(tableModel instanceof AbstractTableModel) {
+        // Registering again places this listener before the table for the next events.
+        tableModel.removeTableModelListener(this);
+        tableModel.addTableModelListener(this);
+      }
+      RowSorter<? extends TableModel> rowSorter = table.getRowSorter();
+      if(!(rowSorter instanceof DefaultRowSorter) || ((DefaultRowSorter<?, ?>)rowSorter).getRowFilter() != rowFilter || e.getType() != TableModelEvent.UPDATE) {
+        // Inserted and deleted rows change the row count, so the row filter does not use the previous bit sets for them.
+        return;
+      }
+      // The row sorter may already have filtered the rows with the previous bit sets.
+      int firstRow = e.getFirstRow();
+      int lastRow = e.getLastRow();
+      if(firstRow == TableModelEvent.HEADER_ROW || lastRow == Integer.MAX_VALUE) {
+        rowSorter.allRowsChanged();
+      } else {
+        lastRow = Math.min(lastRow, rowSorter.getModelRowCount() - 1);
+        if(firstRow <= lastRow) {
+          rowSorter.rowsUpdated(firstRow, lastRow);
+        }
+      }
+    }
+
+    private void tableChanged_(TableModelEvent e) {
+      int modelRowCount = tableModel.getRowCount();
+      int firstRow = e.getFirstRow();
+      int lastRow = e.getLastRow();
+      if(firstRow == TableModelEvent.HEADER_ROW || lastRow == Integer.MAX_VALUE) {
+        invalidate();
+        rowCount = modelRowCount;
+        return;
+      }
+      switch(e.getType()) {
+        case TableModelEvent.UPDATE: {
+          int eventColumn = e.getColumn();
+          int endRow = Math.min(lastRow + 1, rowCount);
+          for(int column=0; column<columnToRowBitSet.length; column++) {
+            BitSet columnRowBitSet = columnToRowBitSet[column];
+            // A filter without value filter gets the whole row, so it may depend on any column.
+            if(columnRowBitSet != null && (eventColumn == TableModelEvent.ALL_COLUMNS || eventColumn == column || columnToValueFilter[column] == null)) {
+              evaluate(column, columnRowBitSet, firstRow, endRow);
+            }
+          }
+          adjustRowBitSet(firstRow, endRow);
+          break;
+        }
+        case TableModelEvent.INSERT: {
+          int insertCount = lastRow - firstRow + 1;
+          if(firstRow > rowCount || rowCount + insertCount != modelRowCount) {
+            invalidate();
+            rowCount = modelRowCount;
+            return;
+          }
+          rowCount = modelRowCount;
+          for(int column=0; column<columnToRowBitSet.length; column++) {
+            BitSet columnRowBitSet = columnToRowBitSet[column];
+            if(columnRowBitSet != null) {
+              columnRowBitSet = RowBitSets.insertRows(columnRowBitSet, firstRow, insertCount);
+              evaluate(column, columnRowBitSet, firstRow, lastRow + 1);
+              columnToRowBitSet[column] = columnRowBitSet;
+            }
+          }
+          if(rowBitSet != null) {
+            rowBitSet = RowBitSets.insertRows(rowBitSet, firstRow, insertCount);
+            adjustRowBitSet(firstRow, lastRow + 1);
+          }
+          break;
+        }
+        case TableModelEvent.DELETE: {
+          int deleteCount = lastRow - firstRow + 1;
+          if(lastRow >= rowCount || rowCount - deleteCount != modelRowCount) {
+            invalidate();
+            rowCount = modelRowCount;
+            return;
+          }
+          rowCount = modelRowCount;
+          for(int column=0; column<columnToRowBitSet.length; column++) {
+            BitSet columnRowBitSet = columnToRowBitSet[column];
+            if(columnRowBitSet != null) {
+              columnToRowBitSet[column] = RowBitSets.deleteRows(columnRowBitSet, firstRow, deleteCount);
+            }
+          }
+          if(rowBitSet != null) {
+            rowBitSet = RowBitSets.deleteRows(rowBitSet, firstRow, deleteCount);
+          }
+          break;
+        }
+      }
+    }
+
+  }
+
+  private FilterRowSets filterRowSets = new FilterRowSets();
+
   private RowFilter<TableModel, Integer> rowFilter = new RowFilter<TableModel, Integer>() {
     @Override
     public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry) {
       if(activeFilterIndexes.length == 0) {
         return true;
       }
-      for(int i=0; i<activeFilterIndexes.length; i++) {
-        int column = activeFilterIndexes[i];
-        TableHeaderFilter headerFilter = headerFilters[column];
-        if(headerFilter != null && headerFilter.isFilterActive(column)) {
-          if(!headerFilter.include(entry, column)) {
-            return false;
-          }
-        }
-      }
-      return true;
+      return filterRowSets.getRowBitSet(entry.getModel()).get(entry.getIdentifier());
     }
   };
 
+  /**
+   * Get the row filter to set on the row sorter of the table. The filters are compiled when they change, so a header filter that is modified must be followed by a call to notifyFilterChanged.
+   */
   public RowFilter<TableModel, Integer> getRowFilter() {
     return rowFilter;
   }
@@ -449,4 +830,61 @@ public class FilterableTableHeader extends JTableHeader {
     return listenerList.getListeners(TableHeaderFilterChangeListener.class);
   }
 
+  /**
+   * A listener of the work done to filter the rows and to load the filter editors, to find where the time goes. Nothing is measured when no such listener is registered.
+   */
+  public static interface TableHeaderFilterMetricsListener extends EventListener {
+    /**
+     * Called when the filter of a column was evaluated on some rows, either on all the rows after a filter modification or on the rows modified by a table model event.
+     * @param column the column in model coordinates.
+     * @param evaluatedRowCount the number of rows evaluated.
+     * @param rejectedRowCount the number of evaluated rows that the filter rejected.
+     * @param nanos the time spent in the filter.
+     */
+    public void processColumnEvaluation(int column, int evaluatedRowCount, int rejectedRowCount, long nanos);
+    /**
+     * Called when a filter editor has finished loading its values.
+     * @param column the column in model coordinates.
+     * @param scanNanos the time spent collecting the values of the column.
+     * @param sortNanos the time spent sorting the values.
+     * @param buildNanos the time spent creating the components that show the values.
+     */
+    public void processFilterEditorLoading(int column, long scanNanos, long sortNanos, long buildNanos);
+  }
+
+  private boolean isCollectingMetrics;
+
+  public void addFilterMetricsListener(TableHeaderFilterMetricsListener listener) {
+    listenerList.add(TableHeaderFilterMetricsListener.class, listener);
+    isCollectingMetrics = true;
+  }
+
+  public void removeFilterMetricsListener(TableHeaderFilterMetricsListener listener) {
+    listenerList.remove(TableHeaderFilterMetricsListener.class, listener);
+    isCollectingMetrics = listenerList.getListenerCount(TableHeaderFilterMetricsListener.class) > 0;
+  }
+
+  public TableHeaderFilterMetricsListener[] getFilterMetricsListeners() {
+    return listenerList.getListeners(TableHeaderFilterMetricsListener.class);
+  }
+
+  /**
+   * Indicate whether metrics listeners are registered, in which case header filters should measure the loading of their filter editors and call notifyFilterEditorLoaded().
+   */
+  public boolean isCollectingMetrics() {
+    return isCollectingMetrics;
+  }
+
+  private void fireColumnEvaluated(int column, int evaluatedRowCount, int rejectedRowCount, long nanos) {
+    for(TableHeaderFilterMetricsListener listener: getFilterMetricsListeners()) {
+      listener.processColumnEvaluation(column, evaluatedRowCount, rejectedRowCount, nanos);
+    }
+  }
+
+  public void notifyFilterEditorLoaded(int column, long scanNanos, long sortNanos, long buildNanos) {
+    for(TableHeaderFilterMetricsListener listener: getFilterMetricsListeners()) {
+      listener.processFilterEditorLoading(column, scanNanos, sortNanos, buildNanos);
+    }
+  }
+
 }
@@ -19,7 +19,6 @@ import java.util.Set;
 import java.util.Vector;
 
 import javax.swing.JTree;
-import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.event.MouseInputAdapter;
 import javax.swing.tree.TreeModel;
@@ -228,28 +227,20 @@ public class JDragSelectTree extends JTree {
           final int y = e.getY();
           final int closestRowForLocation = getClosestRowForLocation(x, y);
           if(closestRowForLocation >= 0) {
-            new Thread() {
-              @Override
+            // Scroll with a small delay, using the latest location when the mouse keeps moving.
+            DelayedActionScheduler.coalesce(this, 50, new Runnable() {
               public void run() {
-                try {
-                  sleep(50);
-                } catch(Exception e) {
-                }
-                SwingUtilities.invokeLater(new Runnable() {
-                  public void run() {
-                    Rectangle bounds = getRowBounds(closestRowForLocation);
-                    if(bounds != null) {
-                      bounds.x = x;
-                      if(getVisibleRect().x + 10 > x) {
-                        bounds.x -= 15;
-                      }
-                      bounds.width = 1;
-                      scrollRectToVisible(bounds);
-                    }
+                Rectangle bounds = getRowBounds(closestRowForLocation);
+                if(bounds != null) {
+                  bounds.x = x;
+                  if(getVisibleRect().x + 10 > x) {
+                    bounds.x -= 15;
                   }
-                });
+                  bounds.width = 1;
+                  scrollRectToVisible(bounds);
+                }
               }
-            }.start();
+            });
           }
         }
       }
@@ -33,6 +33,7 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import javax.swing.text.PlainDocument;
+import javax.swing.text.Segment;
 
 /**
  * A text entry field, which supports validation, formatting and masks.
@@ -40,8 +41,46 @@ import javax.swing.text.PlainDocument;
  */
 public class JTextEntryField extends JTextField {
 
+  /**
+   * The document of the field, which validates the edits. The edits only touch the span that changes, and the resulting text is only built when the mask or the validator needs it.
+   */
   private class ValidationDocument extends PlainDocument {
 
+    private StringBuilder editedTextBuilder = new StringBuilder();
+    private Segment segment = new Segment();
+
+    /**
+     * Get the text that would result from replacing a span of the document, built in a reusable buffer.
+     */
+    private String getEditedText(int offset, int length, String str) throws BadLocationException {
+      int documentLength = getLength();
+      int endOffset = Math.min(documentLength, offset + length);
+      editedTextBuilder.setLength(0);
+      getText(0, offset, segment);
+      editedTextBuilder.append(segment.array, segment.offset, segment.count);
+      editedTextBuilder.append(str);
+      getText(endOffset, documentLength - endOffset, segment);
+      editedTextBuilder.append(segment.array, segment.offset, segment.count);
+      String editedText = editedTextBuilder.toString();
+      if(editedTextBuilder.capacity() > 1024) {
+        // Do not retain the buffer of a large paste.
+        editedTextBuilder = new StringBuilder();
+      }
+      return editedText;
+    }
+
+    /**
+     * Replace a span of the document without validation.
+     */
+    private void replace_(int offset, int length, String str, AttributeSet a) throws BadLocationException {
+      isInserting = true;
+      try {
+        super.replace(offset, length, str, a);
+      } finally {
+        isInserting = false;
+      }
+    }
+
     private boolean isInserting;
     @Override
     public void insertString(int offs, String str, AttributeSet a) throws BadLocationException {
@@ -49,49 +88,47 @@ public class JTextEntryField extends JTextField {
         super.insertString(offs, str, a);
         return;
       }
-      isInserting = true;
-      try {
-        boolean isInsertingInMask = false;
-        if(textMask != null) {
-          String text = getText_();
-          if(text.length() > 0) {
-            int caretPosition = getCaretPosition();
-            if(offs == caretPosition) {
-              offs = textMask.getNextValidInputPosition(caretPosition);
-            }
-            if(textMask.insertText(text, str, offs) == null) {
-              setCaretPosition(textMask.getNextValidInputPosition(getCaretPosition()));
-              return;
-            }
-            isInsertingInMask = true;
-          }
+      String textToInsert = null;
+      if(textMask != null && getLength() > 0) {
+        int caretPosition = getCaretPosition();
+        if(offs == caretPosition) {
+          offs = textMask.getNextValidInputPosition(caretPosition);
+        }
+        if(offs + str.length() <= getLength()) {
+          // The mask validates the inserted code points in the text as it is once edited.
+          textToInsert = textMask.getInsertedText(getEditedText(offs, str.length(), str), str, offs);
         }
-        String oldText = getText_();
-        String result = oldText.substring(0, offs) + str + oldText.substring(offs);
-        if(!isTextAllowed(result)) {
+        if(textToInsert == null) {
+          setCaretPosition(textMask.getNextValidInputPosition(getCaretPosition()));
           return;
         }
-        if(maximumLength < 0 || isValueForDisplayShown) {
-          super.insertString(offs, str, a);
-          if(isInsertingInMask) {
-            int addedLength = str.length();
-            String text = getText_();
-            text = text.substring(0, offs + addedLength) + text.substring(offs + addedLength * 2);
-            text = textMask.insertText(text, text, 0);
-            setText_(text);
-            setCaretPosition(textMask.getNextValidInputPosition(offs + addedLength));
+      }
+      if(isTextAllowedChecked() && !isTextAllowed(getEditedText(offs, 0, str))) {
+        return;
+      }
+      if(maximumLength < 0 || isValueForDisplayShown) {
+        if(textToInsert != null) {
+          // The mask has a fixed length, so the inserted text overwrites the characters that follow.
+          int addedLength = str.length();
+          replace_(offs, addedLength, textToInsert, a);
+          setCaretPosition(textMask.getNextValidInputPosition(offs + addedLength));
+        } else {
+          isInserting = true;
+          try {
+            super.insertString(offs, str, a);
+          } finally {
+            isInserting = false;
           }
-          return;
         }
-        int oldCaretPosition = getCaretPosition();
+        return;
+      }
+      if(getLength() + str.length() > maximumLength) {
+        showPopup(true);
+        return;
+      }
+      isInserting = true;
+      try {
         super.insertString(offs, str, a);
-        String text = getText_();
-        if(text.length() > maximumLength) {
-          setText_(oldText);
-          setCaretPosition(oldCaretPosition);
-          showPopup(true);
-          return;
-        }
       } finally {
         isInserting = false;
       }
@@ -102,22 +139,8 @@ public class JTextEntryField extends JTextField {
         super.remove(offs, len);
         return;
       }
-      String text = getText_();
-      boolean isRemovingInMask = false;
       if(textMask != null) {
-        text = textMask.removeText(text, offs, len);
-        if(text == null) {
-          return;
-        }
-        isRemovingInMask = true;
-      }
-      if(isRemovingInMask) {
-        isInserting = true;
-        try {
-          setText_(text);
-        } finally {
-          isInserting = false;
-        }
+        replace_(offs, len, textMask.getRemovedText(offs, len), null);
         setCaretPosition(offs);
       } else {
         super.remove(offs, len);
@@ -126,14 +149,14 @@ public class JTextEntryField extends JTextField {
     @Override
     public void replace(int offset, int length, String text, AttributeSet attrs) throws BadLocationException {
       if(!isInserting) {
-        String oldText = getText_();
         if(length > 0) {
-          String newText = oldText.substring(0, offset) + text + oldText.substring(Math.min(oldText.length(), offset + length));
-          if(!isTextAllowed(newText)) {
-            return;
-          }
-          if(oldText.length() > 0 && textMask != null) {
-            if(!textMask.isTextValid(newText)) {
+          boolean isMaskChecked = textMask != null && getLength() > 0;
+          if(isMaskChecked || isTextAllowedChecked()) {
+            String newText = getEditedText(offset, length, text == null? "": text);
+            if(!isTextAllowed(newText)) {
+              return;
+            }
+            if(isMaskChecked && !textMask.isTextValid(newText)) {
               return;
             }
           }
@@ -448,11 +471,13 @@ public class JTextEntryField extends JTextField {
   }
 
   private void adjustPopupVisibility() {
-    String text = getText_();
-    if(isTextValid(text)) {
+    int length = getDocument().getLength();
+    // Without mask and validator, the length is enough to validate the text.
+    boolean isTextValid = textMask == null && validator == null? maximumLength < 0 || length <= maximumLength: isTextValid(getText_());
+    if(isTextValid) {
       hidePopup();
     } else {
-      showPopup(maximumLength > 0 && text.length() > maximumLength);
+      showPopup(maximumLength > 0 && length > maximumLength);
     }
   }
 
@@ -737,6 +762,13 @@ public class JTextEntryField extends JTextField {
     return lastValidText;
   }
 
+  /**
+   * Indicate whether isTextAllowed() has to be called with the text, which is otherwise always allowed.
+   */
+  private boolean isTextAllowedChecked() {
+    return !isValueForDisplayShown && validator != null;
+  }
+
   private boolean isTextAllowed(String text) {
     if(isValueForDisplayShown) {
       return true;
@@ -0,0 +1,52 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import java.util.BitSet;
+
+/**
+ * Operations on bit sets of rows, to follow the insertions and deletions of a table model.
+ * @author Christopher Deckers
+ */
+class RowBitSets {
+
+  private RowBitSets() {
+  }
+
+  /**
+   * Shift the bits to account for inserted rows, the bits of which are cleared.
+   * @return the resulting bit set, which may be the original one.
+   */
+  public static BitSet insertRows(BitSet bitSet, int row, int count) {
+    if(bitSet.nextSetBit(row) < 0) {
+      return bitSet;
+    }
+    BitSet newBitSet = bitSet.get(0, row);
+    for(int i=bitSet.nextSetBit(row); i>=0; i=bitSet.nextSetBit(i + 1)) {
+      newBitSet.set(i + count);
+    }
+    return newBitSet;
+  }
+
+  /**
+   * Shift the bits to account for deleted rows.
+   * @return the resulting bit set, which may be the original one.
+   */
+  public static BitSet deleteRows(BitSet bitSet, int row, int count) {
+    if(bitSet.nextSetBit(row + count) < 0) {
+      bitSet.clear(row, row + count);
+      return bitSet;
+    }
+    BitSet newBitSet = bitSet.get(0, row);
+    for(int i=bitSet.nextSetBit(row + count); i>=0; i=bitSet.nextSetBit(i + 1)) {
+      newBitSet.set(i - count);
+    }
+    return newBitSet;
+  }
+
+}
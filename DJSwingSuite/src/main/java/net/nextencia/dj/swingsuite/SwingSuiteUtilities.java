@@ -32,6 +32,8 @@ import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 import javax.swing.text.JTextComponent;
 
+import net.nextencia.dj.swingsuite.TableColumnAutoFitter.FitStrategy;
+
 /**
  * @author Christopher Deckers
  */
@@ -221,6 +223,39 @@ public class SwingSuiteUtilities {
     }
   }
 
+  /**
+   * Auto fit the columns of a table, measuring the rows according to a strategy. The measured widths are kept with the table, so that fitting again only measures the rows that changed.
+   * @param table the table for which to auto fit the columns.
+   * @param maxWidth the maximum width that a column can take (like Integer.MAX_WIDTH).
+   * @param fitStrategy the rows to measure.
+   */
+  public static void autoFitTableColumns(JTable table, int maxWidth, FitStrategy fitStrategy) {
+    TableColumnAutoFitter.getAutoFitter(table).fitColumns(maxWidth, fitStrategy);
+  }
+
+  /**
+   * Auto fit the column of a table, measuring the rows according to a strategy. The measured widths are kept with the table, so that fitting again only measures the rows that changed.
+   * @param table the table for which to auto fit the column.
+   * @param columnIndex the index of the column to auto fit, in view index.
+   * @param maxWidth the maximum width that a column can take (like Integer.MAX_WIDTH).
+   * @param fitStrategy the rows to measure.
+   */
+  public static void autoFitTableColumn(JTable table, int columnIndex, int maxWidth, FitStrategy fitStrategy) {
+    TableColumnAutoFitter.getAutoFitter(table).fitColumn(columnIndex, maxWidth, fitStrategy);
+  }
+
+  /**
+   * Set whether the columns of a table are kept fitted to all the rows as the data changes. Only the rows that change are measured again, and the columns are resized shortly after a batch of changes.
+   * @param table the table for which to keep the columns fitted.
+   * @param isEnabled true to keep the columns fitted, false otherwise.
+   * @param maxWidth the maximum width that a column can take (like Integer.MAX_WIDTH).
+   */
+  public static void setLiveAutoFitEnabled(JTable table, boolean isEnabled, int maxWidth) {
+    TableColumnAutoFitter autoFitter = TableColumnAutoFitter.getAutoFitter(table);
+    autoFitter.setLiveFitMaxWidth(maxWidth);
+    autoFitter.setLiveFitting(isEnabled);
+  }
+
   /**
    * Decode some text that was URL encoded.
    * @param s the string to decode.
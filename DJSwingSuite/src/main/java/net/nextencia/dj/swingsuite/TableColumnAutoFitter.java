@@ -0,0 +1,982 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextAttribute;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.RowSorterEvent;
+import javax.swing.event.RowSorterListener;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+
+/**
+ * Fit the width of the columns of a table to their content, with strategies that avoid measuring all the rows of large tables.<br>
+ * The measured widths are cached per row and invalidated by the events of the table model, so fitting again after some rows changed only measures these rows. Other changes that affect the rendering, like a new renderer or font, require a call to invalidate().<br>
+ * The fitter can also keep the columns fitted as the data changes, with live fitting.
+ * @author Christopher Deckers
+ */
+public class TableColumnAutoFitter {
+
+  public static enum FitStrategy {
+    /**
+     * Measure all the rows.
+     */
+    ALL_ROWS,
+    /**
+     * Measure all the rows in short time slices in the event dispatch thread, widening the column as wider content is found.
+     */
+    ALL_ROWS_INCREMENTALLY,
+    /**
+     * Measure the rows that are visible in the viewport, or sampled rows if the table is not showing.
+     */
+    VISIBLE_ROWS,
+    /**
+     * Measure the first and last rows, as well as a random sample of the other rows.
+     */
+    SAMPLED_ROWS,
+  }
+
+  // Artificial space to look nicer.
+  private static final int CELL_SPACING = 10;
+  // Artificial space for the sort icon.
+  private static final int SORT_ICON_SPACING = 20;
+
+  private static final long TIME_SLICE_NANOS = 20 * 1000000L;
+
+  private static final int LIVE_FIT_DELAY = 100;
+
+  private static final int PARALLEL_CHUNK_SIZE = 8192;
+
+  /**
+   * Get the auto fitter of a table, which is created on first use and kept with the table.
+   */
+  public static TableColumnAutoFitter getAutoFitter(JTable table) {
+    TableColumnAutoFitter autoFitter = (TableColumnAutoFitter)table.getClientProperty(TableColumnAutoFitter.class);
+    if(autoFitter == null) {
+      autoFitter = new TableColumnAutoFitter(table);
+      table.putClientProperty(TableColumnAutoFitter.class, autoFitter);
+    }
+    return autoFitter;
+  }
+
+  private JTable table;
+  private TableModel tableModel;
+  private int sampledEdgeRowCount = 100;
+  private int sampledRandomRowCount = 1000;
+
+  /**
+   * The widths of the cells per model column and model row, where 0 means that the cell is not measured.
+   */
+  private int[][] columnToRowWidths = new int[0][];
+
+  private Map<Integer, IncrementalFit> columnToIncrementalFitMap = new HashMap<Integer, IncrementalFit>();
+
+  private Map<Integer, ParallelFit> columnToParallelFitMap = new HashMap<Integer, ParallelFit>();
+
+  private TableModelListener tableModelListener = new TableModelListener() {
+    public void tableChanged(TableModelEvent e) {
+      adjustRowWidths(e);
+    }
+  };
+
+  private PropertyChangeListener modelPropertyChangeListener = new PropertyChangeListener() {
+    public void propertyChange(PropertyChangeEvent e) {
+      setTableModel(table.getModel());
+    }
+  };
+
+  private TableColumnModelListener columnModelListener = new TableColumnModelListener() {
+    public void columnAdded(TableColumnModelEvent e) {
+      scheduleLiveFit();
+    }
+    public void columnRemoved(TableColumnModelEvent e) {
+    }
+    public void columnMoved(TableColumnModelEvent e) {
+    }
+    public void columnMarginChanged(ChangeEvent e) {
+    }
+    public void columnSelectionChanged(ListSelectionEvent e) {
+    }
+  };
+
+  private PropertyChangeListener columnModelPropertyChangeListener = new PropertyChangeListener() {
+    public void propertyChange(PropertyChangeEvent e) {
+      if(e.getOldValue() != null) {
+        ((TableColumnModel)e.getOldValue()).removeColumnModelListener(columnModelListener);
+      }
+      if(e.getNewValue() != null) {
+        ((TableColumnModel)e.getNewValue()).addColumnModelListener(columnModelListener);
+      }
+      scheduleLiveFit();
+    }
+  };
+
+  private RowSorterListener rowSorterListener = new RowSorterListener() {
+    public void sorterChanged(RowSorterEvent e) {
+      // The filtering may have changed the rows that are shown.
+      scheduleLiveFit();
+    }
+  };
+
+  private PropertyChangeListener rowSorterPropertyChangeListener = new PropertyChangeListener() {
+    public void propertyChange(PropertyChangeEvent e) {
+      if(e.getOldValue() != null) {
+        ((RowSorter<?>)e.getOldValue()).removeRowSorterListener(rowSorterListener);
+      }
+      if(e.getNewValue() != null) {
+        ((RowSorter<?>)e.getNewValue()).addRowSorterListener(rowSorterListener);
+      }
+      scheduleLiveFit();
+    }
+  };
+
+  public TableColumnAutoFitter(JTable table) {
+    this.table = table;
+    table.addPropertyChangeListener("model", modelPropertyChangeListener);
+    setTableModel(table.getModel());
+  }
+
+  private void setTableModel(TableModel tableModel) {
+    if(this.tableModel != null) {
+      this.tableModel.removeTableModelListener(tableModelListener);
+    }
+    this.tableModel = tableModel;
+    if(tableModel != null) {
+      tableModel.addTableModelListener(tableModelListener);
+    }
+    invalidate();
+  }
+
+  /**
+   * Stop following the table, cancelling any incremental fit.
+   */
+  public void dispose() {
+    setLiveFitting(false);
+    table.removePropertyChangeListener("model", modelPropertyChangeListener);
+    setTableModel(null);
+    if(table.getClientProperty(TableColumnAutoFitter.class) == this) {
+      table.putClientProperty(TableColumnAutoFitter.class, null);
+    }
+  }
+
+  /**
+   * Forget all the measured widths, and cancel any incremental or parallel fit.
+   */
+  public void invalidate() {
+    columnToRowWidths = new int[0][];
+    columnToWidthHistogram = new WidthHistogram[0];
+    liveRowBitSet = null;
+    textMeasurer = null;
+    for(IncrementalFit incrementalFit: columnToIncrementalFitMap.values()) {
+      incrementalFit.cancel();
+    }
+    columnToIncrementalFitMap.clear();
+    for(ParallelFit parallelFit: columnToParallelFitMap.values()) {
+      parallelFit.cancel();
+    }
+    columnToParallelFitMap.clear();
+    scheduleLiveFit();
+  }
+
+  /**
+   * The number of rows of each width, for a column whose shown rows are all measured, so that its maximum width is known without measuring all the rows again.
+   */
+  private static class WidthHistogram {
+
+    private int[] widthToCount = new int[256];
+    private int maxWidth;
+    // The shown rows, in model coordinates, that are not counted because they have to be measured.
+    private BitSet pendingRowBitSet = new BitSet();
+
+    public void add(int width) {
+      if(width >= widthToCount.length) {
+        widthToCount = Arrays.copyOf(widthToCount, Math.max(width + 1, widthToCount.length * 2));
+      }
+      widthToCount[width]++;
+      if(width > maxWidth) {
+        maxWidth = width;
+      }
+    }
+
+    public void remove(int width) {
+      widthToCount[width]--;
+      // The maximum can only decrease by the widths that are no longer used, which is amortized by the additions.
+      while(maxWidth > 0 && widthToCount[maxWidth] == 0) {
+        maxWidth--;
+      }
+    }
+
+    /**
+     * @return the maximum width, or 0 if there are no rows.
+     */
+    public int getMaxWidth() {
+      return maxWidth;
+    }
+
+  }
+
+  private boolean isLiveFitting;
+  private int liveFitMaxWidth = Integer.MAX_VALUE;
+  private WidthHistogram[] columnToWidthHistogram = new WidthHistogram[0];
+  // The rows that were shown during the last live fit, in model coordinates.
+  private BitSet liveRowBitSet;
+
+  /**
+   * Set whether the columns are kept fitted to all the rows that are shown. The rows are measured once, then only the rows of the events of the model and the rows that a filter shows again are measured, and the columns are resized shortly after a batch of changes.
+   * @param isLiveFitting true to keep the columns fitted, false otherwise.
+   */
+  public void setLiveFitting(boolean isLiveFitting) {
+    if(this.isLiveFitting == isLiveFitting) {
+      return;
+    }
+    this.isLiveFitting = isLiveFitting;
+    if(isLiveFitting) {
+      table.addPropertyChangeListener("columnModel", columnModelPropertyChangeListener);
+      table.getColumnModel().addColumnModelListener(columnModelListener);
+      table.addPropertyChangeListener("rowSorter", rowSorterPropertyChangeListener);
+      if(table.getRowSorter() != null) {
+        table.getRowSorter().addRowSorterListener(rowSorterListener);
+      }
+      scheduleLiveFit();
+    } else {
+      table.removePropertyChangeListener("columnModel", columnModelPropertyChangeListener);
+      table.getColumnModel().removeColumnModelListener(columnModelListener);
+      table.removePropertyChangeListener("rowSorter", rowSorterPropertyChangeListener);
+      if(table.getRowSorter() != null) {
+        table.getRowSorter().removeRowSorterListener(rowSorterListener);
+      }
+      DelayedActionScheduler.cancel(this);
+      columnToWidthHistogram = new WidthHistogram[0];
+      liveRowBitSet = null;
+    }
+  }
+
+  public boolean isLiveFitting() {
+    return isLiveFitting;
+  }
+
+  /**
+   * Set the maximum width that live fitting gives to a column.
+   * @param liveFitMaxWidth the maximum width (like Integer.MAX_VALUE).
+   */
+  public void setLiveFitMaxWidth(int liveFitMaxWidth) {
+    this.liveFitMaxWidth = liveFitMaxWidth;
+    scheduleLiveFit();
+  }
+
+  public int getLiveFitMaxWidth() {
+    return liveFitMaxWidth;
+  }
+
+  private void scheduleLiveFit() {
+    if(!isLiveFitting) {
+      return;
+    }
+    DelayedActionScheduler.coalesce(this, LIVE_FIT_DELAY, new Runnable() {
+      public void run() {
+        fitLiveColumns();
+      }
+    });
+  }
+
+  private void fitLiveColumns() {
+    if(!isLiveFitting) {
+      return;
+    }
+    int viewRowCount = table.getRowCount();
+    BitSet viewRowBitSet = new BitSet(tableModel.getRowCount());
+    for(int viewRow=0; viewRow<viewRowCount; viewRow++) {
+      viewRowBitSet.set(table.convertRowIndexToModel(viewRow));
+    }
+    adjustLiveRows(viewRowBitSet);
+    TableColumnModel columnModel = table.getColumnModel();
+    for(int viewColumn=columnModel.getColumnCount()-1; viewColumn>=0; viewColumn--) {
+      TableColumn tableColumn = columnModel.getColumn(viewColumn);
+      int modelColumn = tableColumn.getModelIndex();
+      if(modelColumn >= tableModel.getColumnCount()) {
+        continue;
+      }
+      int[] rowWidths = getRowWidths(modelColumn);
+      WidthHistogram widthHistogram = getWidthHistogram(modelColumn);
+      if(widthHistogram == null) {
+        // All the shown rows have to be counted, and measured unless they already are.
+        widthHistogram = new WidthHistogram();
+        widthHistogram.pendingRowBitSet.or(liveRowBitSet);
+        if(modelColumn >= columnToWidthHistogram.length) {
+          columnToWidthHistogram = Arrays.copyOf(columnToWidthHistogram, modelColumn + 1);
+        }
+        columnToWidthHistogram[modelColumn] = widthHistogram;
+      }
+      BitSet pendingRowBitSet = widthHistogram.pendingRowBitSet;
+      for(int row=pendingRowBitSet.nextSetBit(0); row>=0; row=pendingRowBitSet.nextSetBit(row + 1)) {
+        if(rowWidths[row] == 0) {
+          int viewRow = table.convertRowIndexToView(row);
+          rowWidths[row] = measureCell(viewRow, viewColumn, table.getValueAt(viewRow, viewColumn));
+        }
+        widthHistogram.add(rowWidths[row]);
+      }
+      pendingRowBitSet.clear();
+      setWidth(tableColumn, getHeaderWidth(tableColumn, viewColumn), widthHistogram.getMaxWidth(), liveFitMaxWidth);
+    }
+  }
+
+  /**
+   * Remove the rows that are no longer shown from the histograms, and mark the rows that are shown again as pending.
+   * @param viewRowBitSet the rows that are shown, in model coordinates.
+   */
+  private void adjustLiveRows(BitSet viewRowBitSet) {
+    if(liveRowBitSet != null) {
+      BitSet hiddenRowBitSet = (BitSet)liveRowBitSet.clone();
+      hiddenRowBitSet.andNot(viewRowBitSet);
+      BitSet shownRowBitSet = (BitSet)viewRowBitSet.clone();
+      shownRowBitSet.andNot(liveRowBitSet);
+      for(int column=0; column<columnToWidthHistogram.length; column++) {
+        WidthHistogram widthHistogram = columnToWidthHistogram[column];
+        if(widthHistogram != null) {
+          int[] rowWidths = columnToRowWidths[column];
+          for(int row=hiddenRowBitSet.nextSetBit(0); row>=0; row=hiddenRowBitSet.nextSetBit(row + 1)) {
+            if(!widthHistogram.pendingRowBitSet.get(row)) {
+              widthHistogram.remove(rowWidths[row]);
+            }
+          }
+          widthHistogram.pendingRowBitSet.andNot(hiddenRowBitSet);
+          widthHistogram.pendingRowBitSet.or(shownRowBitSet);
+        }
+      }
+    }
+    liveRowBitSet = viewRowBitSet;
+  }
+
+  private WidthHistogram getWidthHistogram(int modelColumn) {
+    return modelColumn < columnToWidthHistogram.length? columnToWidthHistogram[modelColumn]: null;
+  }
+
+  /**
+   * Set the number of rows that the sampling strategy measures.
+   * @param sampledEdgeRowCount the number of rows measured at the start and at the end of the table.
+   * @param sampledRandomRowCount the number of other rows measured at random.
+   */
+  public void setSampledRowCounts(int sampledEdgeRowCount, int sampledRandomRowCount) {
+    this.sampledEdgeRowCount = sampledEdgeRowCount;
+    this.sampledRandomRowCount = sampledRandomRowCount;
+  }
+
+  public int getSampledEdgeRowCount() {
+    return sampledEdgeRowCount;
+  }
+
+  public int getSampledRandomRowCount() {
+    return sampledRandomRowCount;
+  }
+
+  private boolean isMeasuringInParallel;
+
+  /**
+   * Set whether the texts of large columns are measured using several threads when fitting to all the rows. The values are still read and converted to text on the calling thread, and the renderers that do not only show text are still used on the calling thread. The fit then returns without waiting for the measurements, and the width of the column is applied later in the event dispatch thread.
+   * @param isMeasuringInParallel true to measure the texts in parallel, false otherwise.
+   */
+  public void setMeasuringInParallel(boolean isMeasuringInParallel) {
+    this.isMeasuringInParallel = isMeasuringInParallel;
+  }
+
+  public boolean isMeasuringInParallel() {
+    return isMeasuringInParallel;
+  }
+
+  private int parallelMeasurementThreshold = 100000;
+
+  /**
+   * Set the number of rows from which the texts are measured in parallel, when parallel measurement is enabled.
+   * @param parallelMeasurementThreshold the minimum number of rows, which is 100000 by default.
+   */
+  public void setParallelMeasurementThreshold(int parallelMeasurementThreshold) {
+    this.parallelMeasurementThreshold = parallelMeasurementThreshold;
+  }
+
+  public int getParallelMeasurementThreshold() {
+    return parallelMeasurementThreshold;
+  }
+
+  private boolean isMeasuringInParallel(FitStrategy fitStrategy) {
+    return isMeasuringInParallel && fitStrategy == FitStrategy.ALL_ROWS && table.getRowCount() >= parallelMeasurementThreshold;
+  }
+
+  /**
+   * Fit all the columns of the table.
+   * @param maxWidth the maximum width that a column can take (like Integer.MAX_VALUE).
+   * @param fitStrategy the rows to measure.
+   */
+  public void fitColumns(int maxWidth, FitStrategy fitStrategy) {
+    for(int viewColumn=table.getColumnCount()-1; viewColumn>=0; viewColumn--) {
+      fitColumn(viewColumn, maxWidth, fitStrategy);
+    }
+  }
+
+  /**
+   * Fit a column of the table.
+   * @param viewColumn the index of the column, in view coordinates.
+   * @param maxWidth the maximum width that a column can take (like Integer.MAX_VALUE).
+   * @param fitStrategy the rows to measure.
+   */
+  public void fitColumn(int viewColumn, int maxWidth, FitStrategy fitStrategy) {
+    TableColumn tableColumn = table.getColumnModel().getColumn(viewColumn);
+    int modelColumn = tableColumn.getModelIndex();
+    IncrementalFit incrementalFit = columnToIncrementalFitMap.remove(modelColumn);
+    if(incrementalFit != null) {
+      incrementalFit.cancel();
+    }
+    ParallelFit parallelFit = columnToParallelFitMap.remove(modelColumn);
+    if(parallelFit != null) {
+      parallelFit.cancel();
+    }
+    int headerWidth = getHeaderWidth(tableColumn, viewColumn);
+    int rowCount = table.getRowCount();
+    int width = headerWidth;
+    switch(fitStrategy) {
+      case ALL_ROWS:
+        if(isMeasuringInParallel(fitStrategy)) {
+          parallelFit = new ParallelFit(tableColumn, headerWidth, maxWidth);
+          columnToParallelFitMap.put(modelColumn, parallelFit);
+          parallelFit.start(viewColumn);
+          return;
+        }
+        width = measureRows(viewColumn, modelColumn, 0, rowCount, width, maxWidth);
+        break;
+      case ALL_ROWS_INCREMENTALLY:
+        incrementalFit = new IncrementalFit(tableColumn, headerWidth, maxWidth);
+        columnToIncrementalFitMap.put(modelColumn, incrementalFit);
+        incrementalFit.run();
+        return;
+      case VISIBLE_ROWS: {
+        Rectangle visibleRect = table.getVisibleRect();
+        if(!visibleRect.isEmpty()) {
+          int startRow = Math.max(0, table.rowAtPoint(visibleRect.getLocation()));
+          int endRow = table.rowAtPoint(new Point(visibleRect.x, visibleRect.y + visibleRect.height - 1));
+          endRow = endRow < 0? rowCount: endRow + 1;
+          width = measureRows(viewColumn, modelColumn, startRow, endRow, width, maxWidth);
+        } else {
+          // The table is not showing: fall back to sampling.
+          width = measureSampledRows(viewColumn, modelColumn, width, maxWidth);
+        }
+        break;
+      }
+      case SAMPLED_ROWS:
+        width = measureSampledRows(viewColumn, modelColumn, width, maxWidth);
+        break;
+    }
+    setWidth(tableColumn, headerWidth, width, maxWidth);
+  }
+
+  /**
+   * Measure the rows at both ends of the table and some rows in between, unless the maximum width is reached.
+   * @return the largest of the given width and of the widths of the rows.
+   */
+  private int measureSampledRows(int viewColumn, int modelColumn, int width, int maxWidth) {
+    int rowCount = table.getRowCount();
+    int edgeRowCount = Math.min(sampledEdgeRowCount, (rowCount + 1) / 2);
+    width = measureRows(viewColumn, modelColumn, 0, edgeRowCount, width, maxWidth);
+    width = measureRows(viewColumn, modelColumn, rowCount - edgeRowCount, rowCount, width, maxWidth);
+    int middleRowCount = rowCount - 2 * edgeRowCount;
+    if(middleRowCount > 0) {
+      // A fixed seed, so that fitting again gives the same result.
+      Random random = new Random(rowCount);
+      for(int i=Math.min(sampledRandomRowCount, middleRowCount); i>0 && !isMaxWidthReached(width, maxWidth); i--) {
+        int viewRow = edgeRowCount + random.nextInt(middleRowCount);
+        width = measureRows(viewColumn, modelColumn, viewRow, viewRow + 1, width, maxWidth);
+      }
+    }
+    return width;
+  }
+
+  private int getHeaderWidth(TableColumn tableColumn, int viewColumn) {
+    JTableHeader tableHeader = table.getTableHeader();
+    TableCellRenderer headerRenderer = tableColumn.getHeaderRenderer();
+    if(headerRenderer == null) {
+      headerRenderer = tableHeader.getDefaultRenderer();
+    }
+    return headerRenderer.getTableCellRendererComponent(table, tableColumn.getHeaderValue(), false, false, 0, viewColumn).getPreferredSize().width;
+  }
+
+  private boolean isMaxWidthReached(int width, int maxWidth) {
+    return width + table.getRowMargin() >= maxWidth;
+  }
+
+  private void setWidth(TableColumn tableColumn, int headerWidth, int cellWidth, int maxWidth) {
+    tableColumn.setPreferredWidth(Math.min(Math.max(headerWidth + SORT_ICON_SPACING, cellWidth) + table.getRowMargin(), maxWidth));
+  }
+
+  /**
+   * Measure a range of rows, unless the maximum width is reached.
+   * @return the largest of the given width and of the widths of the rows.
+   */
+  private int measureRows(int viewColumn, int modelColumn, int startRow, int endRow, int width, int maxWidth) {
+    int[] rowWidths = getRowWidths(modelColumn);
+    for(int viewRow=startRow; viewRow<endRow && !isMaxWidthReached(width, maxWidth); viewRow++) {
+      int modelRow = table.convertRowIndexToModel(viewRow);
+      int rowWidth = rowWidths[modelRow];
+      if(rowWidth == 0) {
+        rowWidth = measureCell(viewRow, viewColumn, table.getValueAt(viewRow, viewColumn));
+        rowWidths[modelRow] = rowWidth;
+      }
+      width = Math.max(width, rowWidth);
+    }
+    return width;
+  }
+
+  /**
+   * @return the width of the cell, which is always greater than 0.
+   */
+  private int measureCell(int viewRow, int viewColumn, Object value) {
+    TableCellRenderer renderer = table.getCellRenderer(viewRow, viewColumn);
+    if(textMeasurer == null || !textMeasurer.isFor(renderer, table.getFont())) {
+      textMeasurer = new TextMeasurer(table, renderer, viewRow, viewColumn);
+    }
+    int preferredWidth = textMeasurer.getPreferredWidth(value);
+    if(preferredWidth < 0) {
+      Component component = renderer.getTableCellRendererComponent(table, value, false, false, viewRow, viewColumn);
+      preferredWidth = component.getPreferredSize().width;
+    }
+    return preferredWidth + CELL_SPACING;
+  }
+
+  private TextMeasurer textMeasurer;
+
+  /**
+   * Measure all the rows of a column, the values being read in the event dispatch thread while the texts of the previous chunks are measured by the common pool. The event dispatch thread does not wait for the measurements: the last chunk to be measured hands the fit back to the event dispatch thread, which applies the width.
+   */
+  private class ParallelFit implements Runnable {
+
+    private TableColumn tableColumn;
+    private int headerWidth;
+    private int maxWidth;
+    private int[] rowWidths;
+    private int width;
+    private List<WidthChunk> chunkList = new ArrayList<WidthChunk>();
+    /**
+     * The chunks being measured, plus one while the texts are being collected.
+     */
+    private AtomicInteger pendingCount = new AtomicInteger(1);
+    private volatile boolean isCancelled;
+    private boolean isModelChanged;
+
+    public ParallelFit(TableColumn tableColumn, int headerWidth, int maxWidth) {
+      this.tableColumn = tableColumn;
+      this.headerWidth = headerWidth;
+      this.maxWidth = maxWidth;
+      width = headerWidth;
+    }
+
+    public void cancel() {
+      isCancelled = true;
+      for(WidthChunk chunk: chunkList) {
+        chunk.cancel(false);
+      }
+    }
+
+    /**
+     * The measured rows may have moved, so their widths are only used for this fit and not cached.
+     */
+    public void discardRowWidths() {
+      isModelChanged = true;
+    }
+
+    public void start(int viewColumn) {
+      rowWidths = getRowWidths(tableColumn.getModelIndex());
+      int rowCount = table.getRowCount();
+      WidthChunk chunk = null;
+      for(int viewRow=0; viewRow<rowCount; viewRow++) {
+        int modelRow = table.convertRowIndexToModel(viewRow);
+        int rowWidth = rowWidths[modelRow];
+        if(rowWidth == 0) {
+          Object value = table.getValueAt(viewRow, viewColumn);
+          TableCellRenderer renderer = table.getCellRenderer(viewRow, viewColumn);
+          if(textMeasurer == null || !textMeasurer.isFor(renderer, table.getFont())) {
+            textMeasurer = new TextMeasurer(table, renderer, viewRow, viewColumn);
+          }
+          String text = textMeasurer.getText(value);
+          if(text != null) {
+            if(chunk == null || chunk.textMeasurer != textMeasurer || chunk.isFull()) {
+              fork(chunk);
+              chunk = new WidthChunk(this, textMeasurer);
+            }
+            chunk.add(modelRow, text);
+            continue;
+          }
+          rowWidth = measureCell(viewRow, viewColumn, value);
+          rowWidths[modelRow] = rowWidth;
+        }
+        width = Math.max(width, rowWidth);
+      }
+      fork(chunk);
+      // The texts are collected: if all the chunks are already measured, the width is applied right away.
+      if(pendingCount.decrementAndGet() == 0) {
+        run();
+      }
+    }
+
+    private void fork(WidthChunk chunk) {
+      if(chunk != null) {
+        chunkList.add(chunk);
+        pendingCount.incrementAndGet();
+        chunk.fork();
+      }
+    }
+
+    /**
+     * Called by the thread that measured a chunk.
+     */
+    public void chunkMeasured() {
+      if(pendingCount.decrementAndGet() == 0 && !isCancelled) {
+        SwingUtilities.invokeLater(this);
+      }
+    }
+
+    public void run() {
+      if(isCancelled) {
+        return;
+      }
+      int modelColumn = tableColumn.getModelIndex();
+      columnToParallelFitMap.remove(modelColumn);
+      if(table.convertColumnIndexToView(modelColumn) < 0) {
+        return;
+      }
+      boolean isCaching = !isModelChanged && modelColumn < columnToRowWidths.length && columnToRowWidths[modelColumn] == rowWidths;
+      for(WidthChunk chunk: chunkList) {
+        width = Math.max(width, chunk.maxWidth);
+        if(isCaching) {
+          for(int i=0; i<chunk.count; i++) {
+            rowWidths[chunk.rows[i]] = chunk.widths[i];
+          }
+        }
+      }
+      setWidth(tableColumn, headerWidth, width, maxWidth);
+    }
+
+  }
+
+  /**
+   * The texts of some rows of a column, whose widths are computed by another thread.
+   */
+  private static class WidthChunk extends RecursiveAction {
+
+    private ParallelFit parallelFit;
+    private TextMeasurer textMeasurer;
+    private int[] rows = new int[PARALLEL_CHUNK_SIZE];
+    private String[] texts = new String[PARALLEL_CHUNK_SIZE];
+    private int[] widths;
+    private int maxWidth;
+    private int count;
+
+    public WidthChunk(ParallelFit parallelFit, TextMeasurer textMeasurer) {
+      this.parallelFit = parallelFit;
+      this.textMeasurer = textMeasurer;
+    }
+
+    public boolean isFull() {
+      return count == rows.length;
+    }
+
+    public void add(int row, String text) {
+      rows[count] = row;
+      texts[count] = text;
+      count++;
+    }
+
+    @Override
+    protected void compute() {
+      if(parallelFit.isCancelled) {
+        return;
+      }
+      widths = new int[count];
+      for(int i=0; i<count; i++) {
+        int width = textMeasurer.getTextPreferredWidth(texts[i]) + CELL_SPACING;
+        widths[i] = width;
+        maxWidth = Math.max(maxWidth, width);
+      }
+      texts = null;
+      parallelFit.chunkMeasured();
+    }
+
+  }
+
+  /**
+   * The measurement of the cells of a renderer that only shows the text of the values, like the default renderers of a table. The text is measured with the font and the font render context of the renderer, which cache the advances of the glyphs, instead of configuring the renderer and computing its layout for each cell. Once the texts are known, measuring them is thread-safe.
+   */
+  private static class TextMeasurer {
+
+    private TableCellRenderer renderer;
+    private Font font;
+    private Font textFont;
+    private FontRenderContext fontRenderContext;
+    private int insetsWidth;
+
+    public TextMeasurer(JTable table, TableCellRenderer renderer, int viewRow, int viewColumn) {
+      this.renderer = renderer;
+      font = table.getFont();
+      Class<?> rendererClass = renderer.getClass();
+      // Subclasses may show something else than the text of the value, except the number renderer which only aligns it.
+      if(rendererClass != DefaultTableCellRenderer.class && rendererClass != DefaultTableCellRenderer.UIResource.class && !"javax.swing.JTable$NumberRenderer".equals(rendererClass.getName())) {
+        return;
+      }
+      // Configure the renderer with the font and border that it uses for any cell.
+      DefaultTableCellRenderer defaultRenderer = (DefaultTableCellRenderer)renderer.getTableCellRendererComponent(table, "", false, false, viewRow, viewColumn);
+      if(defaultRenderer != renderer || defaultRenderer.getIcon() != null || defaultRenderer.getClientProperty(TextAttribute.NUMERIC_SHAPING) != null) {
+        return;
+      }
+      textFont = defaultRenderer.getFont();
+      fontRenderContext = defaultRenderer.getFontMetrics(textFont).getFontRenderContext();
+      Insets insets = defaultRenderer.getInsets();
+      insetsWidth = insets.left + insets.right;
+    }
+
+    public boolean isFor(TableCellRenderer renderer, Font font) {
+      return this.renderer == renderer && this.font == font;
+    }
+
+    /**
+     * @return the preferred width of the renderer for the value, or -1 if the renderer has to compute it.
+     */
+    public int getPreferredWidth(Object value) {
+      String text = getText(value);
+      return text == null? -1: getTextPreferredWidth(text);
+    }
+
+    /**
+     * @return the text to measure for the value, or null if the renderer has to compute the width.
+     */
+    public String getText(Object value) {
+      if(textFont == null) {
+        return null;
+      }
+      String text = value == null? "": value.toString();
+      // HTML requires a view, and labels widen text starting with a W by its left side bearing.
+      if(text.length() > 0 && (text.charAt(0) == 'W' || BasicHTML.isHTMLString(text))) {
+        return null;
+      }
+      return text;
+    }
+
+    /**
+     * Get the preferred width of the renderer for a text, which can be called from any thread.
+     */
+    public int getTextPreferredWidth(String text) {
+      if(text.length() == 0) {
+        return insetsWidth;
+      }
+      // Rounded like the string width of the font metrics.
+      return insetsWidth + (int)(0.5 + textFont.getStringBounds(text, fontRenderContext).getWidth());
+    }
+
+  }
+
+  private int[] getRowWidths(int modelColumn) {
+    if(modelColumn >= columnToRowWidths.length) {
+      columnToRowWidths = Arrays.copyOf(columnToRowWidths, modelColumn + 1);
+    }
+    int[] rowWidths = columnToRowWidths[modelColumn];
+    int rowCount = tableModel.getRowCount();
+    if(rowWidths == null || rowWidths.length != rowCount) {
+      // The size can only differ if some events were missed.
+      rowWidths = new int[rowCount];
+      columnToRowWidths[modelColumn] = rowWidths;
+      if(modelColumn < columnToWidthHistogram.length) {
+        columnToWidthHistogram[modelColumn] = null;
+      }
+    }
+    return rowWidths;
+  }
+
+  private void adjustRowWidths(TableModelEvent e) {
+    int firstRow = e.getFirstRow();
+    int lastRow = e.getLastRow();
+    if(firstRow == TableModelEvent.HEADER_ROW || lastRow == Integer.MAX_VALUE) {
+      columnToRowWidths = new int[0][];
+      columnToWidthHistogram = new WidthHistogram[0];
+      liveRowBitSet = null;
+    } else {
+      int count = lastRow - firstRow + 1;
+      for(int column=0; column<columnToRowWidths.length; column++) {
+        int[] rowWidths = columnToRowWidths[column];
+        if(rowWidths == null) {
+          continue;
+        }
+        // The histogram of a live column no longer counts the changed rows, which are measured again by the next live fit, once the row sorter knows the rows that are shown.
+        WidthHistogram widthHistogram = getWidthHistogram(column);
+        switch(e.getType()) {
+          case TableModelEvent.UPDATE:
+            if(e.getColumn() == TableModelEvent.ALL_COLUMNS || e.getColumn() == column) {
+              int startRow = Math.min(firstRow, rowWidths.length);
+              int endRow = Math.min(lastRow + 1, rowWidths.length);
+              if(widthHistogram != null) {
+                for(int row=startRow; row<endRow; row++) {
+                  uncountLiveRow(widthHistogram, rowWidths, row);
+                }
+              }
+              Arrays.fill(rowWidths, startRow, endRow, 0);
+            }
+            break;
+          case TableModelEvent.INSERT:
+            if(firstRow > rowWidths.length) {
+              rowWidths = null;
+            } else {
+              int[] newRowWidths = new int[rowWidths.length + count];
+              System.arraycopy(rowWidths, 0, newRowWidths, 0, firstRow);
+              System.arraycopy(rowWidths, firstRow, newRowWidths, lastRow + 1, rowWidths.length - firstRow);
+              rowWidths = newRowWidths;
+              if(widthHistogram != null) {
+                widthHistogram.pendingRowBitSet = RowBitSets.insertRows(widthHistogram.pendingRowBitSet, firstRow, count);
+              }
+            }
+            break;
+          case TableModelEvent.DELETE:
+            if(lastRow >= rowWidths.length) {
+              rowWidths = null;
+            } else {
+              if(widthHistogram != null) {
+                for(int row=firstRow; row<=lastRow; row++) {
+                  uncountLiveRow(widthHistogram, rowWidths, row);
+                }
+                widthHistogram.pendingRowBitSet = RowBitSets.deleteRows(widthHistogram.pendingRowBitSet, firstRow, count);
+              }
+              int[] newRowWidths = new int[rowWidths.length - count];
+              System.arraycopy(rowWidths, 0, newRowWidths, 0, firstRow);
+              System.arraycopy(rowWidths, lastRow + 1, newRowWidths, firstRow, newRowWidths.length - firstRow);
+              rowWidths = newRowWidths;
+            }
+            break;
+        }
+        columnToRowWidths[column] = rowWidths;
+        if(column < columnToWidthHistogram.length && rowWidths == null) {
+          columnToWidthHistogram[column] = null;
+        }
+      }
+      if(liveRowBitSet != null) {
+        // The inserted rows are not shown yet, and the next live fit finds whether they are.
+        switch(e.getType()) {
+          case TableModelEvent.INSERT:
+            liveRowBitSet = RowBitSets.insertRows(liveRowBitSet, firstRow, count);
+            break;
+          case TableModelEvent.DELETE:
+            liveRowBitSet = RowBitSets.deleteRows(liveRowBitSet, firstRow, count);
+            break;
+        }
+      }
+    }
+    scheduleLiveFit();
+    // The rows may have moved, so incremental fits start again, which is quick for the rows that are already measured.
+    for(IncrementalFit incrementalFit: columnToIncrementalFitMap.values()) {
+      incrementalFit.restart();
+    }
+    for(ParallelFit parallelFit: columnToParallelFitMap.values()) {
+      parallelFit.discardRowWidths();
+    }
+  }
+
+  /**
+   * Remove a row from the histogram of a live column if it is counted, marking it as pending if it is shown.
+   */
+  private void uncountLiveRow(WidthHistogram widthHistogram, int[] rowWidths, int row) {
+    if(liveRowBitSet.get(row) && !widthHistogram.pendingRowBitSet.get(row)) {
+      widthHistogram.remove(rowWidths[row]);
+      widthHistogram.pendingRowBitSet.set(row);
+    }
+  }
+
+  /**
+   * Measure all the rows of a column in time slices, each slice being followed by the processing of pending events.
+   */
+  private class IncrementalFit implements Runnable {
+
+    private TableColumn tableColumn;
+    private int headerWidth;
+    private int maxWidth;
+    private int nextRow;
+    private int width;
+    private int appliedWidth;
+    private boolean isCancelled;
+
+    public IncrementalFit(TableColumn tableColumn, int headerWidth, int maxWidth) {
+      this.tableColumn = tableColumn;
+      this.headerWidth = headerWidth;
+      this.maxWidth = maxWidth;
+      width = headerWidth;
+    }
+
+    public void cancel() {
+      isCancelled = true;
+    }
+
+    public void restart() {
+      nextRow = 0;
+      width = headerWidth;
+    }
+
+    public void run() {
+      if(isCancelled) {
+        return;
+      }
+      int modelColumn = tableColumn.getModelIndex();
+      int viewColumn = table.convertColumnIndexToView(modelColumn);
+      if(viewColumn < 0) {
+        columnToIncrementalFitMap.remove(modelColumn);
+        return;
+      }
+      long startNanos = System.nanoTime();
+      int rowCount = table.getRowCount();
+      while(nextRow < rowCount && !isMaxWidthReached(width, maxWidth) && System.nanoTime() - startNanos < TIME_SLICE_NANOS) {
+        int endRow = Math.min(nextRow + 64, rowCount);
+        width = measureRows(viewColumn, modelColumn, nextRow, endRow, width, maxWidth);
+        nextRow = endRow;
+      }
+      boolean isComplete = nextRow >= rowCount || isMaxWidthReached(width, maxWidth);
+      // The column only grows while measuring, as rows may be measured again after a modification of the model.
+      if(isComplete || width > appliedWidth) {
+        setWidth(tableColumn, headerWidth, width, maxWidth);
+        appliedWidth = width;
+      }
+      if(isComplete) {
+        columnToIncrementalFitMap.remove(modelColumn);
+      } else {
+        SwingUtilities.invokeLater(this);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,352 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+
+/**
+ * The rows of a table model column that contain numbers, sorted by value, so that the rows of a range of values can be found with a binary search. The index can instead be built on the dates of the column, the value of which is their time in epoch milliseconds.<br>
+ * The index is built lazily and is then maintained from the table model events, so it relies on the model firing proper events when its data changes. Events affecting many rows make the index rebuild itself on next use rather than being applied.
+ * @author Christopher Deckers
+ */
+class TableColumnNumberIndex implements TableModelListener {
+
+  private static final int MAX_INCREMENTAL_ROW_COUNT = 64;
+
+  private TableModel tableModel;
+  private int column;
+  private boolean isIndexingDates;
+
+  private boolean isValid;
+  private int rowCount;
+  private double[] rowToValue;
+  private BitSet numberRowBitSet;
+  private BitSet nullRowBitSet;
+  private double[] sortedValues;
+  private int[] sortedRows;
+  private int sortedCount;
+  private int nanCount;
+
+  public TableColumnNumberIndex(TableModel tableModel, int column, boolean isIndexingDates) {
+    this.tableModel = tableModel;
+    this.column = column;
+    this.isIndexingDates = isIndexingDates;
+    tableModel.addTableModelListener(this);
+  }
+
+  public TableModel getTableModel() {
+    return tableModel;
+  }
+
+  public boolean isIndexingDates() {
+    return isIndexingDates;
+  }
+
+  private boolean isIndexed(Object value) {
+    return isIndexingDates? value instanceof Date: value instanceof Number;
+  }
+
+  private double getNumber(Object value) {
+    // Epoch milliseconds are exactly represented by doubles for any date within 280 000 years.
+    return isIndexingDates? ((Date)value).getTime(): ((Number)value).doubleValue();
+  }
+
+  public void dispose() {
+    tableModel.removeTableModelListener(this);
+    invalidate();
+  }
+
+  public void invalidate() {
+    isValid = false;
+    rowToValue = null;
+    numberRowBitSet = null;
+    nullRowBitSet = null;
+    sortedValues = null;
+    sortedRows = null;
+  }
+
+  public boolean isUpToDate() {
+    return isValid && rowCount == tableModel.getRowCount();
+  }
+
+  /**
+   * Build the index if it is not up to date.
+   */
+  public void validate() {
+    if(isUpToDate()) {
+      return;
+    }
+    rowCount = tableModel.getRowCount();
+    int capacity = Math.max(16, rowCount);
+    rowToValue = new double[capacity];
+    numberRowBitSet = new BitSet(rowCount);
+    nullRowBitSet = new BitSet();
+    sortedRows = new int[capacity];
+    sortedCount = 0;
+    nanCount = 0;
+    for(int row=0; row<rowCount; row++) {
+      Object value = tableModel.getValueAt(row, column);
+      if(isIndexed(value)) {
+        double number = getNumber(value);
+        rowToValue[row] = number;
+        numberRowBitSet.set(row);
+        sortedRows[sortedCount++] = row;
+        if(Double.isNaN(number)) {
+          nanCount++;
+        }
+      } else if(value == null) {
+        nullRowBitSet.set(row);
+      }
+    }
+    sortRows(sortedRows, sortedCount, rowToValue);
+    sortedValues = new double[capacity];
+    for(int i=0; i<sortedCount; i++) {
+      sortedValues[i] = rowToValue[sortedRows[i]];
+    }
+    isValid = true;
+  }
+
+  /**
+   * Stable merge sort of rows according to their values, using the total order of Double.compare().
+   */
+  private static void sortRows(int[] rows, int count, double[] rowToValue) {
+    int[] source = rows;
+    int[] target = new int[count];
+    for(int width=1; width<count; width*=2) {
+      for(int start=0; start<count; start+=2*width) {
+        int middle = Math.min(start + width, count);
+        int end = Math.min(start + 2 * width, count);
+        int i = start;
+        int j = middle;
+        int k = start;
+        while(i < middle && j < end) {
+          target[k++] = Double.compare(rowToValue[source[j]], rowToValue[source[i]]) < 0? source[j++]: source[i++];
+        }
+        while(i < middle) {
+          target[k++] = source[i++];
+        }
+        while(j < end) {
+          target[k++] = source[j++];
+        }
+      }
+      int[] swap = source;
+      source = target;
+      target = swap;
+    }
+    if(source != rows) {
+      System.arraycopy(source, 0, rows, 0, count);
+    }
+  }
+
+  /**
+   * Get the number of sorted positions, which is the number of rows that have an indexed value.
+   */
+  public int getSortedCount() {
+    return sortedCount;
+  }
+
+  /**
+   * Get the first sorted position of a NaN value. NaN values are at the end, and they are never part of a range.
+   */
+  public int getNaNPosition() {
+    return sortedCount - nanCount;
+  }
+
+  /**
+   * Get the first sorted position whose value is greater than or equal to the given value.
+   */
+  public int getLowerPosition(double value) {
+    int low = 0;
+    int high = getNaNPosition();
+    while(low < high) {
+      int middle = (low + high) >>> 1;
+      if(sortedValues[middle] >= value) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Get the first sorted position whose value is strictly greater than the given value.
+   */
+  public int getUpperPosition(double value) {
+    int low = 0;
+    int high = getNaNPosition();
+    while(low < high) {
+      int middle = (low + high) >>> 1;
+      if(sortedValues[middle] > value) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Set the bits of the rows of a range of sorted positions.
+   */
+  public void setRows(BitSet rowBitSet, int startPosition, int endPosition) {
+    for(int i=startPosition; i<endPosition; i++) {
+      rowBitSet.set(sortedRows[i]);
+    }
+  }
+
+  /**
+   * Set the bits of the rows that contain null.
+   */
+  public void setNullRows(BitSet rowBitSet) {
+    rowBitSet.or(nullRowBitSet);
+  }
+
+  /**
+   * Find the position where a value is or would be inserted, in the total order of Double.compare().
+   */
+  private int findPosition(double value) {
+    int low = 0;
+    int high = sortedCount;
+    while(low < high) {
+      int middle = (low + high) >>> 1;
+      if(Double.compare(sortedValues[middle], value) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private void addRow(int row) {
+    Object value = tableModel.getValueAt(row, column);
+    if(value == null) {
+      nullRowBitSet.set(row);
+      return;
+    }
+    if(!isIndexed(value)) {
+      return;
+    }
+    double number = getNumber(value);
+    rowToValue[row] = number;
+    numberRowBitSet.set(row);
+    if(Double.isNaN(number)) {
+      nanCount++;
+    }
+    int position = findPosition(number);
+    // Keep equal values in row order.
+    while(position < sortedCount && Double.compare(sortedValues[position], number) == 0 && sortedRows[position] < row) {
+      position++;
+    }
+    if(sortedCount == sortedValues.length) {
+      int newCapacity = sortedCount * 2;
+      sortedValues = Arrays.copyOf(sortedValues, newCapacity);
+      sortedRows = Arrays.copyOf(sortedRows, newCapacity);
+    }
+    System.arraycopy(sortedValues, position, sortedValues, position + 1, sortedCount - position);
+    System.arraycopy(sortedRows, position, sortedRows, position + 1, sortedCount - position);
+    sortedValues[position] = number;
+    sortedRows[position] = row;
+    sortedCount++;
+  }
+
+  private void removeRow(int row) {
+    nullRowBitSet.clear(row);
+    if(!numberRowBitSet.get(row)) {
+      return;
+    }
+    numberRowBitSet.clear(row);
+    double number = rowToValue[row];
+    if(Double.isNaN(number)) {
+      nanCount--;
+    }
+    int position = findPosition(number);
+    while(sortedRows[position] != row) {
+      position++;
+    }
+    System.arraycopy(sortedValues, position + 1, sortedValues, position, sortedCount - position - 1);
+    System.arraycopy(sortedRows, position + 1, sortedRows, position, sortedCount - position - 1);
+    sortedCount--;
+  }
+
+  public void tableChanged(TableModelEvent e) {
+    if(!isValid) {
+      return;
+    }
+    int firstRow = e.getFirstRow();
+    int lastRow = e.getLastRow();
+    if(firstRow == TableModelEvent.HEADER_ROW || lastRow == Integer.MAX_VALUE || column >= tableModel.getColumnCount() || lastRow - firstRow >= MAX_INCREMENTAL_ROW_COUNT) {
+      invalidate();
+      return;
+    }
+    switch(e.getType()) {
+      case TableModelEvent.UPDATE: {
+        int eventColumn = e.getColumn();
+        if(eventColumn != TableModelEvent.ALL_COLUMNS && eventColumn != column) {
+          return;
+        }
+        for(int row=firstRow; row<=lastRow && row<rowCount; row++) {
+          removeRow(row);
+          addRow(row);
+        }
+        break;
+      }
+      case TableModelEvent.INSERT: {
+        int insertCount = lastRow - firstRow + 1;
+        if(firstRow > rowCount) {
+          invalidate();
+          return;
+        }
+        for(int i=0; i<sortedCount; i++) {
+          if(sortedRows[i] >= firstRow) {
+            sortedRows[i] += insertCount;
+          }
+        }
+        if(rowCount + insertCount > rowToValue.length) {
+          rowToValue = Arrays.copyOf(rowToValue, Math.max(rowToValue.length * 2, rowCount + insertCount));
+        }
+        System.arraycopy(rowToValue, firstRow, rowToValue, lastRow + 1, rowCount - firstRow);
+        numberRowBitSet = RowBitSets.insertRows(numberRowBitSet, firstRow, insertCount);
+        nullRowBitSet = RowBitSets.insertRows(nullRowBitSet, firstRow, insertCount);
+        rowCount += insertCount;
+        for(int row=firstRow; row<=lastRow; row++) {
+          addRow(row);
+        }
+        break;
+      }
+      case TableModelEvent.DELETE: {
+        if(lastRow >= rowCount) {
+          invalidate();
+          return;
+        }
+        int deleteCount = lastRow - firstRow + 1;
+        for(int row=firstRow; row<=lastRow; row++) {
+          removeRow(row);
+        }
+        for(int i=0; i<sortedCount; i++) {
+          if(sortedRows[i] > lastRow) {
+            sortedRows[i] -= deleteCount;
+          }
+        }
+        System.arraycopy(rowToValue, lastRow + 1, rowToValue, firstRow, rowCount - lastRow - 1);
+        numberRowBitSet = RowBitSets.deleteRows(numberRowBitSet, firstRow, deleteCount);
+        nullRowBitSet = RowBitSets.deleteRows(nullRowBitSet, firstRow, deleteCount);
+        rowCount -= deleteCount;
+        break;
+      }
+    }
+  }
+
+}
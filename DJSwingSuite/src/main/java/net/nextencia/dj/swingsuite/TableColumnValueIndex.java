@@ -0,0 +1,463 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+
+/**
+ * A dictionary of the distinct values of a table model column. Each distinct value gets an ID, with its display text and its number of occurrences, and each row references the ID of its value.<br>
+ * The index is built lazily and is then maintained from the table model events, so it relies on the model firing proper events when its data changes.
+ * @author Christopher Deckers
+ */
+class TableColumnValueIndex implements TableModelListener {
+
+  private DefaultTableHeaderFilter headerFilter;
+  private TableModel tableModel;
+  private int column;
+
+  private boolean isValid;
+  private Map<Object, Integer> valueToIdMap;
+  private Object[] idToValue;
+  private String[] idToText;
+  private int[] idToCount;
+  private int idCount;
+  private int unusedIdCount;
+  private int[] rowToId;
+  private int rowCount;
+
+  private Comparator<Object> sortComparator;
+  private int[] sortedIds;
+
+  private int modificationCount;
+  private int buildCount;
+  private boolean isParallel;
+
+  public TableColumnValueIndex(DefaultTableHeaderFilter headerFilter, TableModel tableModel, int column) {
+    this.headerFilter = headerFilter;
+    this.tableModel = tableModel;
+    this.column = column;
+    tableModel.addTableModelListener(this);
+  }
+
+  public TableModel getTableModel() {
+    return tableModel;
+  }
+
+  public void dispose() {
+    tableModel.removeTableModelListener(this);
+    invalidate();
+  }
+
+  public void invalidate() {
+    isValid = false;
+    valueToIdMap = null;
+    idToValue = null;
+    idToText = null;
+    idToCount = null;
+    rowToId = null;
+    sortedIds = null;
+    sortComparator = null;
+  }
+
+  /**
+   * Indicate whether the index reflects the current content of the table model.
+   */
+  public boolean isUpToDate() {
+    return isValid && rowCount == tableModel.getRowCount();
+  }
+
+  /**
+   * Get a counter that changes whenever the table model notifies of a modification, which allows to detect changes that happened during some background processing.
+   */
+  public int getModificationCount() {
+    return modificationCount;
+  }
+
+  /**
+   * Get a counter that changes whenever the index is built, which invalidates the IDs that were obtained before.
+   */
+  public int getBuildCount() {
+    return buildCount;
+  }
+
+  /**
+   * Build the index if it is not up to date.
+   */
+  public void validate() {
+    if(isUpToDate()) {
+      return;
+    }
+    int modelRowCount = tableModel.getRowCount();
+    rowCount = modelRowCount;
+    isParallel = headerFilter.isCollectingInParallel(tableModel, rowCount);
+    valueToIdMap = new HashMap<Object, Integer>();
+    int capacity = 16;
+    idToValue = new Object[capacity];
+    idToText = new String[capacity];
+    idToCount = new int[capacity];
+    idCount = 0;
+    unusedIdCount = 0;
+    rowToId = new int[Math.max(16, rowCount)];
+    sortedIds = null;
+    sortComparator = null;
+    if(isParallel) {
+      collectInParallel();
+    } else {
+      for(int row=0; row<rowCount; row++) {
+        rowToId[row] = addOccurrence(tableModel.getValueAt(row, column), row);
+      }
+    }
+    isValid = true;
+    buildCount++;
+  }
+
+  private static final int MIN_PARALLEL_CHUNK_SIZE = 8192;
+
+  /**
+   * The distinct values of a range of rows, with IDs local to the range.
+   */
+  private class ValueChunk extends RecursiveAction {
+
+    private int startRow;
+    private int endRow;
+    private Map<Object, Integer> valueToLocalIdMap;
+    private List<Object> localIdToValue;
+    private int[] localIdToSampleRow;
+    private int[] localIdToCount;
+    private int[] localIdToId;
+
+    public ValueChunk(int startRow, int endRow) {
+      this.startRow = startRow;
+      this.endRow = endRow;
+    }
+
+    @Override
+    protected void compute() {
+      if(localIdToId != null) {
+        // Second pass, once the local IDs are mapped to the IDs of the index.
+        for(int row=startRow; row<endRow; row++) {
+          rowToId[row] = localIdToId[rowToId[row]];
+        }
+        return;
+      }
+      valueToLocalIdMap = new HashMap<Object, Integer>();
+      localIdToValue = new ArrayList<Object>();
+      localIdToSampleRow = new int[16];
+      localIdToCount = new int[16];
+      for(int row=startRow; row<endRow; row++) {
+        Object value = tableModel.getValueAt(row, column);
+        Integer localId_ = valueToLocalIdMap.get(value);
+        int localId;
+        if(localId_ == null) {
+          localId = localIdToValue.size();
+          if(localId == localIdToCount.length) {
+            localIdToSampleRow = Arrays.copyOf(localIdToSampleRow, localId * 2);
+            localIdToCount = Arrays.copyOf(localIdToCount, localId * 2);
+          }
+          localIdToValue.add(value);
+          localIdToSampleRow[localId] = row;
+          valueToLocalIdMap.put(value, localId);
+        } else {
+          localId = localId_;
+        }
+        localIdToCount[localId]++;
+        rowToId[row] = localId;
+      }
+    }
+
+  }
+
+  /**
+   * Collect the distinct values of ranges of rows in parallel, and then merge them in row order so that the IDs are the same as when collecting sequentially. The texts are converted on the calling thread.
+   */
+  private void collectInParallel() {
+    int chunkSize = Math.max(MIN_PARALLEL_CHUNK_SIZE, rowCount / (ForkJoinPool.getCommonPoolParallelism() * 4));
+    List<ValueChunk> chunkList = new ArrayList<ValueChunk>();
+    for(int startRow=0; startRow<rowCount; startRow+=chunkSize) {
+      chunkList.add(new ValueChunk(startRow, Math.min(startRow + chunkSize, rowCount)));
+    }
+    ForkJoinTask.invokeAll(chunkList);
+    for(ValueChunk chunk: chunkList) {
+      int localIdCount = chunk.localIdToValue.size();
+      int[] localIdToId = new int[localIdCount];
+      for(int localId=0; localId<localIdCount; localId++) {
+        Object value = chunk.localIdToValue.get(localId);
+        Integer id = valueToIdMap.get(value);
+        if(id == null) {
+          id = addId(value, chunk.localIdToSampleRow[localId]);
+        }
+        idToCount[id] += chunk.localIdToCount[localId];
+        localIdToId[localId] = id;
+      }
+      chunk.valueToLocalIdMap = null;
+      chunk.localIdToValue = null;
+      chunk.localIdToId = localIdToId;
+      chunk.reinitialize();
+    }
+    ForkJoinTask.invokeAll(chunkList);
+  }
+
+  private int addOccurrence(Object value, int row) {
+    Integer id = valueToIdMap.get(value);
+    if(id != null) {
+      int id_ = id;
+      if(idToCount[id_]++ == 0) {
+        unusedIdCount--;
+      }
+      return id_;
+    }
+    int newId = addId(value, row);
+    idToCount[newId] = 1;
+    return newId;
+  }
+
+  private int addId(Object value, int row) {
+    if(idCount == idToValue.length) {
+      int newCapacity = idCount * 2;
+      idToValue = Arrays.copyOf(idToValue, newCapacity);
+      idToText = Arrays.copyOf(idToText, newCapacity);
+      idToCount = Arrays.copyOf(idToCount, newCapacity);
+    }
+    int newId = idCount++;
+    idToValue[newId] = value;
+    idToText[newId] = headerFilter.convertToString(value, tableModel, row, column);
+    valueToIdMap.put(value, newId);
+    // A new value invalidates the sort order.
+    sortedIds = null;
+    return newId;
+  }
+
+  private void removeOccurrence(int id) {
+    if(--idToCount[id] == 0) {
+      unusedIdCount++;
+    }
+  }
+
+  /**
+   * Set the content of the index, as computed by some external (and potentially background) processing.
+   */
+  void install(Map<Object, Integer> valueToIdMap, Object[] idToValue, String[] idToText, int[] idToCount, int idCount, int[] rowToId, int rowCount) {
+    this.valueToIdMap = valueToIdMap;
+    this.idToValue = idToValue;
+    this.idToText = idToText;
+    this.idToCount = idToCount;
+    this.idCount = idCount;
+    this.rowToId = rowToId;
+    this.rowCount = rowCount;
+    unusedIdCount = 0;
+    sortedIds = null;
+    sortComparator = null;
+    isValid = true;
+    buildCount++;
+  }
+
+  void installSortedIds(int[] sortedIds, Comparator<Object> valueComparator) {
+    this.sortedIds = sortedIds;
+    sortComparator = valueComparator;
+  }
+
+  public boolean hasSortedIds(Comparator<Object> valueComparator) {
+    return sortedIds != null && sortComparator == valueComparator;
+  }
+
+  public int getIdCount() {
+    return idCount;
+  }
+
+  public Object getValue(int id) {
+    return idToValue[id];
+  }
+
+  public String getText(int id) {
+    return idToText[id];
+  }
+
+  public int getCount(int id) {
+    return idToCount[id];
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getId(int row) {
+    return rowToId[row];
+  }
+
+  /**
+   * Get all the IDs, sorted according to the order of their values. IDs of values that no longer have occurrences are included.
+   * @param valueComparator the comparator of the values.
+   * @return the sorted IDs, which must not be modified.
+   */
+  public int[] getSortedIds(Comparator<Object> valueComparator) {
+    if(hasSortedIds(valueComparator)) {
+      return sortedIds;
+    }
+    sortedIds = sortIds(idToValue, idCount, valueComparator, isParallel);
+    sortComparator = valueComparator;
+    return sortedIds;
+  }
+
+  /**
+   * Sort the IDs of some values.
+   * @param idToValue the values, indexed by their IDs.
+   * @param idCount the number of IDs to consider.
+   * @param valueComparator the comparator of the values.
+   * @param isParallel true to sort on several threads, in which case the comparator must be thread-safe unless it is a collator.
+   * @return the IDs, sorted according to the order of their values.
+   */
+  static int[] sortIds(final Object[] idToValue, int idCount, final Comparator<Object> valueComparator, boolean isParallel) {
+    Integer[] ids = new Integer[idCount];
+    for(int i=0; i<ids.length; i++) {
+      ids[i] = i;
+    }
+    if(isParallel) {
+      Comparator<Integer> idComparator;
+      if(valueComparator instanceof Collator) {
+        // Collators are not thread-safe, but their keys are and they are faster to compare.
+        final CollationKey[] idToKey = new CollationKey[idCount];
+        for(int id=0; id<idCount; id++) {
+          Object value = idToValue[id];
+          if(value != null) {
+            idToKey[id] = ((Collator)valueComparator).getCollationKey(value.toString());
+          }
+        }
+        idComparator = new Comparator<Integer>() {
+          public int compare(Integer id1, Integer id2) {
+            CollationKey key1 = idToKey[id1];
+            CollationKey key2 = idToKey[id2];
+            if(key1 == null) {
+              return key2 == null? 0: -1;
+            }
+            if(key2 == null) {
+              return 1;
+            }
+            return key1.compareTo(key2);
+          }
+        };
+      } else {
+        idComparator = new Comparator<Integer>() {
+          public int compare(Integer id1, Integer id2) {
+            return compareValues(idToValue[id1], idToValue[id2], valueComparator);
+          }
+        };
+      }
+      Arrays.parallelSort(ids, idComparator);
+    } else {
+      Arrays.sort(ids, new Comparator<Integer>() {
+        public int compare(Integer id1, Integer id2) {
+          return compareValues(idToValue[id1], idToValue[id2], valueComparator);
+        }
+      });
+    }
+    int[] sortedIds = new int[ids.length];
+    for(int i=0; i<ids.length; i++) {
+      sortedIds[i] = ids[i];
+    }
+    return sortedIds;
+  }
+
+  static int compareValues(Object o1, Object o2, Comparator<Object> valueComparator) {
+    if(o1 == null) {
+      if(o2 == null) {
+        return 0;
+      }
+      return -1;
+    }
+    if(o2 == null) {
+      return 1;
+    }
+    // TODO: I am not sure how to get the string representation used by the collator.
+    if(valueComparator instanceof Collator) {
+      if(!(o1 instanceof String)) {
+        o1 = o1.toString();
+      }
+      if(!(o2 instanceof String)) {
+        o2 = o2.toString();
+      }
+    }
+    return valueComparator.compare(o1, o2);
+  }
+
+  public void tableChanged(TableModelEvent e) {
+    modificationCount++;
+    if(!isValid) {
+      return;
+    }
+    int firstRow = e.getFirstRow();
+    int lastRow = e.getLastRow();
+    if(firstRow == TableModelEvent.HEADER_ROW || lastRow == Integer.MAX_VALUE || column >= tableModel.getColumnCount()) {
+      invalidate();
+      return;
+    }
+    switch(e.getType()) {
+      case TableModelEvent.UPDATE: {
+        int eventColumn = e.getColumn();
+        if(eventColumn != TableModelEvent.ALL_COLUMNS && eventColumn != column) {
+          return;
+        }
+        for(int row=firstRow; row<=lastRow && row<rowCount; row++) {
+          Object value = tableModel.getValueAt(row, column);
+          int oldId = rowToId[row];
+          if(idToValue[oldId] == null? value != null: !idToValue[oldId].equals(value)) {
+            removeOccurrence(oldId);
+            rowToId[row] = addOccurrence(value, row);
+          }
+        }
+        break;
+      }
+      case TableModelEvent.INSERT: {
+        int insertCount = lastRow - firstRow + 1;
+        if(firstRow > rowCount) {
+          invalidate();
+          return;
+        }
+        if(rowCount + insertCount > rowToId.length) {
+          rowToId = Arrays.copyOf(rowToId, Math.max(rowToId.length * 2, rowCount + insertCount));
+        }
+        System.arraycopy(rowToId, firstRow, rowToId, lastRow + 1, rowCount - firstRow);
+        rowCount += insertCount;
+        for(int row=firstRow; row<=lastRow; row++) {
+          rowToId[row] = addOccurrence(tableModel.getValueAt(row, column), row);
+        }
+        break;
+      }
+      case TableModelEvent.DELETE: {
+        if(lastRow >= rowCount) {
+          invalidate();
+          return;
+        }
+        for(int row=firstRow; row<=lastRow; row++) {
+          removeOccurrence(rowToId[row]);
+        }
+        System.arraycopy(rowToId, lastRow + 1, rowToId, firstRow, rowCount - lastRow - 1);
+        rowCount -= lastRow - firstRow + 1;
+        break;
+      }
+    }
+    // When too many values are no longer referenced, we rebuild the index to release them.
+    if(unusedIdCount > 1024 && unusedIdCount > idCount / 2) {
+      invalidate();
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import java.util.Arrays;
+
+import net.nextencia.dj.swingsuite.FilterableTableHeader.TableHeaderFilterMetricsListener;
+
+/**
+ * A metrics listener that accumulates the work done for each column of a filterable table header, so that it can be inspected or exposed through a management bean. The times are in nanoseconds, and the columns are in model coordinates.
+ * @author Christopher Deckers
+ */
+public class TableHeaderFilterMetrics implements TableHeaderFilterMetricsListener {
+
+  private static class ColumnMetrics {
+    private long evaluationCount;
+    private long evaluatedRowCount;
+    private long rejectedRowCount;
+    private long evaluationNanos;
+    private long filterEditorLoadingCount;
+    private long scanNanos;
+    private long sortNanos;
+    private long buildNanos;
+  }
+
+  private static final ColumnMetrics EMPTY_COLUMN_METRICS = new ColumnMetrics();
+
+  private ColumnMetrics[] columnToMetrics = new ColumnMetrics[0];
+
+  private ColumnMetrics getColumnMetrics(int column) {
+    if(column >= columnToMetrics.length) {
+      columnToMetrics = Arrays.copyOf(columnToMetrics, column + 1);
+    }
+    ColumnMetrics columnMetrics = columnToMetrics[column];
+    if(columnMetrics == null) {
+      columnMetrics = new ColumnMetrics();
+      columnToMetrics[column] = columnMetrics;
+    }
+    return columnMetrics;
+  }
+
+  private ColumnMetrics getColumnMetrics_(int column) {
+    ColumnMetrics columnMetrics = column < columnToMetrics.length? columnToMetrics[column]: null;
+    return columnMetrics == null? EMPTY_COLUMN_METRICS: columnMetrics;
+  }
+
+  public synchronized void processColumnEvaluation(int column, int evaluatedRowCount, int rejectedRowCount, long nanos) {
+    ColumnMetrics columnMetrics = getColumnMetrics(column);
+    columnMetrics.evaluationCount++;
+    columnMetrics.evaluatedRowCount += evaluatedRowCount;
+    columnMetrics.rejectedRowCount += rejectedRowCount;
+    columnMetrics.evaluationNanos += nanos;
+  }
+
+  public synchronized void processFilterEditorLoading(int column, long scanNanos, long sortNanos, long buildNanos) {
+    ColumnMetrics columnMetrics = getColumnMetrics(column);
+    columnMetrics.filterEditorLoadingCount++;
+    columnMetrics.scanNanos += scanNanos;
+    columnMetrics.sortNanos += sortNanos;
+    columnMetrics.buildNanos += buildNanos;
+  }
+
+  /**
+   * Get the number of columns for which metrics may have been collected.
+   */
+  public synchronized int getColumnCount() {
+    return columnToMetrics.length;
+  }
+
+  public synchronized long getEvaluationCount(int column) {
+    return getColumnMetrics_(column).evaluationCount;
+  }
+
+  public synchronized long getEvaluatedRowCount(int column) {
+    return getColumnMetrics_(column).evaluatedRowCount;
+  }
+
+  public synchronized long getRejectedRowCount(int column) {
+    return getColumnMetrics_(column).rejectedRowCount;
+  }
+
+  public synchronized long getEvaluationNanos(int column) {
+    return getColumnMetrics_(column).evaluationNanos;
+  }
+
+  public synchronized long getFilterEditorLoadingCount(int column) {
+    return getColumnMetrics_(column).filterEditorLoadingCount;
+  }
+
+  public synchronized long getScanNanos(int column) {
+    return getColumnMetrics_(column).scanNanos;
+  }
+
+  public synchronized long getSortNanos(int column) {
+    return getColumnMetrics_(column).sortNanos;
+  }
+
+  public synchronized long getBuildNanos(int column) {
+    return getColumnMetrics_(column).buildNanos;
+  }
+
+  public synchronized void reset() {
+    columnToMetrics = new ColumnMetrics[0];
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder sb = new StringBuilder();
+    for(int column=0; column<columnToMetrics.length; column++) {
+      ColumnMetrics columnMetrics = columnToMetrics[column];
+      if(columnMetrics != null) {
+        if(sb.length() > 0) {
+          sb.append('\n');
+        }
+        sb.append("Column ").append(column).append(": ");
+        sb.append(columnMetrics.evaluationCount).append(" evaluations of ").append(columnMetrics.evaluatedRowCount).append(" rows (").append(columnMetrics.rejectedRowCount).append(" rejected) in ").append(columnMetrics.evaluationNanos / 1000000).append(" ms, ");
+        sb.append(columnMetrics.filterEditorLoadingCount).append(" filter editors loaded with scan ").append(columnMetrics.scanNanos / 1000000).append(" ms, sort ").append(columnMetrics.sortNanos / 1000000).append(" ms, build ").append(columnMetrics.buildNanos / 1000000).append(" ms");
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -16,7 +16,7 @@ public abstract class TextEntryMask {
 
   /**
    * Considering some text and a code point that is being inserted at a given position, return the code point to actually insert or null if the insertion is not allowed.
-   *  @param text the text in which the insertion will occur.
+   *  @param text the text in which the insertion occurs, which already contains the inserted code points.
    *  @param codePoint the code point that is being inserted.
    *  @param position the position at which the code point is inserted.
    *  @return the actual code point to insert, or null if this insertion is not allowed.
@@ -64,37 +64,39 @@ public abstract class TextEntryMask {
     return new String(chars, 0, chars.length);
   }
 
-  private static int[] getCodePoints(String s) {
-    int[] codePoints = new int[s.length()];
-    for(int i=0; i<codePoints.length; i++) {
-      codePoints[i] = s.codePointAt(i);
-    }
-    return codePoints;
-  }
-
-  String insertText(String text, String textToInsert, int position) {
-    int length = getLength();
-    if(text.length() != length) {
-      return null;
-    }
-    if(position + textToInsert.length() > length) {
+  /**
+   * Get the text to write at a position when some text is inserted, which overwrites the characters that follow.
+   * @param editedText the whole text once the inserted text overwrote the characters that follow, before it is mapped.
+   * @return the text as mapped by the mask, or null if this insertion is not allowed.
+   */
+  String getInsertedText(String editedText, String textToInsert, int position) {
+    if(editedText.length() != getLength()) {
       return null;
     }
-    int[] codePoints = getCodePoints(text);
-    for(int i=textToInsert.length()-1; i>=0; i--) {
-      Integer codePointToInsert = getCodePoint(text, textToInsert.codePointAt(i), position + i);
+    int insertedLength = textToInsert.length();
+    int[] codePoints = new int[insertedLength];
+    for(int i=insertedLength-1; i>=0; i--) {
+      Integer codePointToInsert = getCodePoint(editedText, textToInsert.codePointAt(i), position + i);
       if(codePointToInsert == null) {
         return null;
       }
-      codePoints[position + i] = codePointToInsert;
+      codePoints[i] = codePointToInsert;
     }
-    return new String(codePoints, 0, codePoints.length);
+    String insertedText = new String(codePoints, 0, insertedLength);
+    // A position may be validated against the others, which the insertion may have invalidated.
+    if(!isTextValid(editedText.substring(0, position) + insertedText + editedText.substring(position + insertedLength))) {
+      return null;
+    }
+    return insertedText;
   }
 
-  String removeText(String text, int position, int length) {
-    int[] codePoints = getCodePoints(text);
-    for(int i=position+length-1; i>=position; i--) {
-      codePoints[i] = getDefaultCodePoint(i);
+  /**
+   * Get the text to write at a position when some text is removed, which are the default code points.
+   */
+  String getRemovedText(int position, int length) {
+    int[] codePoints = new int[length];
+    for(int i=length-1; i>=0; i--) {
+      codePoints[i] = getDefaultCodePoint(position + i);
     }
     return new String(codePoints, 0, codePoints.length);
   }
@@ -0,0 +1,117 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Christopher Deckers
+ */
+public class DefaultTableHeaderFilterTest {
+
+  private JTable table;
+  private FilterableTableHeader filterableTableHeader;
+  private DefaultTableHeaderFilter headerFilter;
+
+  @Before
+  public void setUp() {
+    table = new JTable(new DefaultTableModel(new Object[][] {{"a", 1}, {"b", 2}}, new Object[] {"Text", "Number"}));
+    table.setAutoCreateRowSorter(true);
+    filterableTableHeader = new FilterableTableHeader(table);
+    table.setTableHeader(filterableTableHeader);
+    headerFilter = new DefaultTableHeaderFilter();
+    filterableTableHeader.setHeaderFilter(0, headerFilter);
+    filterableTableHeader.setHeaderFilter(1, headerFilter);
+  }
+
+  @Test
+  public void testSaveAndRestoreFilterState() throws IOException {
+    char[] chars = new char[70000];
+    Arrays.fill(chars, '\u00e9');
+    headerFilter.setAcceptedValues(0, Arrays.asList("a", new String(chars), null));
+    headerFilter.setAcceptedValues(1, Arrays.asList(2));
+    byte[] filterState = headerFilter.saveFilterState();
+    DefaultTableHeaderFilter restoredHeaderFilter = new DefaultTableHeaderFilter();
+    filterableTableHeader.setHeaderFilter(0, restoredHeaderFilter);
+    filterableTableHeader.setHeaderFilter(1, restoredHeaderFilter);
+    restoredHeaderFilter.restoreFilterState(filterableTableHeader, filterState);
+    assertTrue(restoredHeaderFilter.isFilterActive(0));
+    assertTrue(restoredHeaderFilter.isFilterActive(1));
+    assertArrayEquals(filterState, restoredHeaderFilter.saveFilterState());
+  }
+
+  @Test
+  public void testRestoreFilterStateOfOtherColumns() throws IOException {
+    headerFilter.setAcceptedValues(0, Arrays.asList("a"));
+    headerFilter.setAcceptedValues(1, Arrays.asList(2));
+    headerFilter.setAcceptedValues(5, Arrays.asList("x"));
+    byte[] filterState = headerFilter.saveFilterState();
+    DefaultTableHeaderFilter restoredHeaderFilter = new DefaultTableHeaderFilter();
+    filterableTableHeader.setHeaderFilter(0, restoredHeaderFilter);
+    // The second column keeps the filter that saved the state, and the sixth column does not exist.
+    restoredHeaderFilter.restoreFilterState(filterableTableHeader, filterState);
+    assertTrue(restoredHeaderFilter.isFilterActive(0));
+    assertFalse(restoredHeaderFilter.isFilterActive(1));
+    assertFalse(restoredHeaderFilter.isFilterActive(5));
+    @SuppressWarnings("unchecked")
+    TableRowSorter<TableModel> rowSorter = (TableRowSorter<TableModel>)table.getRowSorter();
+    rowSorter.setRowFilter(filterableTableHeader.getRowFilter());
+    assertEquals(1, table.getRowCount());
+  }
+
+  @Test(expected = NotSerializableException.class)
+  public void testSaveUnsupportedValue() throws IOException {
+    headerFilter.setAcceptedValues(0, Arrays.asList(new BigDecimal("1.5")));
+    headerFilter.saveFilterState();
+  }
+
+  @Test
+  public void testRestoreCorruptFilterState() throws IOException {
+    headerFilter.setAcceptedValues(0, Arrays.asList("a"));
+    byte[] filterState = headerFilter.saveFilterState();
+    byte[][] corruptFilterStates = new byte[][] {
+      // Value count of Integer.MAX_VALUE.
+      {1, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07},
+      // Negative value count.
+      {1, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x0F},
+      // String value longer than the input.
+      {1, 1, 1, 0x7F, 'a'},
+      // Unknown value ID.
+      {1, 0, 1, 0, 0, 1, 0, 1, 5},
+      Arrays.copyOf(filterState, filterState.length - 1),
+    };
+    for(byte[] corruptFilterState: corruptFilterStates) {
+      try {
+        headerFilter.restoreFilterState(filterableTableHeader, corruptFilterState);
+        fail("Corrupt filter state restored: " + Arrays.toString(corruptFilterState));
+      } catch(IOException e) {
+        // Expected.
+      }
+      assertTrue(headerFilter.isFilterActive(0));
+      assertFalse(headerFilter.isFilterActive(1));
+    }
+  }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.JPopupMenu;
+import javax.swing.JTable;
+import javax.swing.RowFilter;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+import net.nextencia.dj.swingsuite.FilterableTableHeader.TableHeaderFilterChangeListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Christopher Deckers
+ */
+public class FilterableTableHeaderTest {
+
+  private DefaultTableModel tableModel;
+  private JTable table;
+  private FilterableTableHeader filterableTableHeader;
+  private TableRowSorter<TableModel> rowSorter;
+  private DefaultTableHeaderFilter headerFilter;
+
+  @Before
+  public void setUp() {
+    tableModel = new DefaultTableModel(new Object[][] {{"a", 1}, {"b", 2}, {"a", 3}, {"c", 4}}, new Object[] {"Text", "Number"});
+    table = new JTable(tableModel);
+    rowSorter = new TableRowSorter<TableModel>(tableModel);
+    rowSorter.setSortsOnUpdates(true);
+    table.setRowSorter(rowSorter);
+    filterableTableHeader = new FilterableTableHeader(table);
+    table.setTableHeader(filterableTableHeader);
+    filterableTableHeader.addFilterChangeListener(new TableHeaderFilterChangeListener() {
+      public void processFilterModification(int[] columns) {
+        rowSorter.setRowFilter(filterableTableHeader.getRowFilter());
+      }
+    });
+    headerFilter = new DefaultTableHeaderFilter();
+    filterableTableHeader.setHeaderFilter(0, headerFilter);
+    filterableTableHeader.setHeaderFilter(1, headerFilter);
+    headerFilter.setAcceptedValues(0, Arrays.asList("a"));
+    filterableTableHeader.notifyFilterChanged(new int[] {0}, new FilterableTableHeader.TableHeaderFilter[] {headerFilter});
+  }
+
+  @Test
+  public void testFilter() {
+    assertEquals(2, rowSorter.getViewRowCount());
+  }
+
+  @Test
+  public void testRemoveFilterInBatchThenUpdateModel() {
+    filterableTableHeader.beginFilterUpdate();
+    try {
+      filterableTableHeader.setHeaderFilter(0, null);
+      // The removal is not applied yet, so the rows are still filtered with the installed filter.
+      tableModel.setValueAt("a", 1, 0);
+      tableModel.setValueAt(5, 2, 1);
+      assertEquals(3, rowSorter.getViewRowCount());
+    } finally {
+      filterableTableHeader.endFilterUpdate();
+    }
+    assertEquals(4, rowSorter.getViewRowCount());
+    tableModel.setValueAt("d", 0, 0);
+    assertEquals(4, rowSorter.getViewRowCount());
+  }
+
+  @Test
+  public void testNestedBatchNotifiesOnce() {
+    final int[] notificationCount = new int[1];
+    filterableTableHeader.addFilterChangeListener(new TableHeaderFilterChangeListener() {
+      public void processFilterModification(int[] columns) {
+        notificationCount[0]++;
+      }
+    });
+    filterableTableHeader.beginFilterUpdate();
+    try {
+      filterableTableHeader.beginFilterUpdate();
+      try {
+        headerFilter.setAcceptedValues(1, Arrays.asList(1, 3, 4));
+        filterableTableHeader.notifyFilterChanged(new int[] {1}, new FilterableTableHeader.TableHeaderFilter[] {headerFilter});
+      } finally {
+        filterableTableHeader.endFilterUpdate();
+      }
+      headerFilter.setAcceptedValues(0, Arrays.asList("a", "c"));
+      filterableTableHeader.notifyFilterChanged(new int[] {0}, new FilterableTableHeader.TableHeaderFilter[] {headerFilter});
+      assertEquals(0, notificationCount[0]);
+    } finally {
+      filterableTableHeader.endFilterUpdate();
+    }
+    assertEquals(1, notificationCount[0]);
+    assertEquals(3, rowSorter.getViewRowCount());
+  }
+
+  /**
+   * A filter of the first column that keeps the rows whose number is even, so it depends on another column.
+   */
+  private static class EvenNumberHeaderFilter implements FilterableTableHeader.TableHeaderFilter {
+    public JPopupMenu getFilterEditor(FilterableTableHeader filterableTableHeader, TableModel tableModel, int column, int[] rows, Comparator<Object> valueComparator) {
+      return null;
+    }
+    public boolean isFilterActive(int column) {
+      return true;
+    }
+    public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> entry, int column) {
+      return ((Integer)entry.getValue(1)) % 2 == 0;
+    }
+    public void clearFilter(int column) {
+    }
+  }
+
+  @Test
+  public void testUpdateOfOtherColumnReevaluatesRowFilter() {
+    EvenNumberHeaderFilter evenNumberHeaderFilter = new EvenNumberHeaderFilter();
+    filterableTableHeader.setHeaderFilter(0, evenNumberHeaderFilter);
+    filterableTableHeader.notifyFilterChanged(new int[] {0}, new FilterableTableHeader.TableHeaderFilter[] {evenNumberHeaderFilter});
+    assertEquals(2, rowSorter.getViewRowCount());
+    tableModel.setValueAt(6, 0, 1);
+    assertEquals(3, rowSorter.getViewRowCount());
+    tableModel.setValueAt(7, 3, 1);
+    assertEquals(2, rowSorter.getViewRowCount());
+  }
+
+  @Test
+  public void testTableNotifiedBeforeFilter() {
+    // The table is registered again, so that it receives the events of the model before the filter of the header.
+    tableModel.removeTableModelListener(table);
+    tableModel.addTableModelListener(table);
+    tableModel.setValueAt("a", 3, 0);
+    assertEquals(3, rowSorter.getViewRowCount());
+    tableModel.setValueAt("b", 0, 0);
+    assertEquals(2, rowSorter.getViewRowCount());
+  }
+
+  /**
+   * A model that does not extend AbstractTableModel and notifies its listeners in the order they were registered, so the table is notified before the header.
+   */
+  private static class ForwardNotifyingTableModel implements TableModel {
+    private Object[][] data;
+    private List<TableModelListener> listenerList = new ArrayList<TableModelListener>();
+    public ForwardNotifyingTableModel(Object[][] data) {
+      this.data = data;
+    }
+    public int getRowCount() {
+      return data.length;
+    }
+    public int getColumnCount() {
+      return data[0].length;
+    }
+    public String getColumnName(int columnIndex) {
+      return "Column " + columnIndex;
+    }
+    public Class<?> getColumnClass(int columnIndex) {
+      return Object.class;
+    }
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+      return true;
+    }
+    public Object getValueAt(int rowIndex, int columnIndex) {
+      return data[rowIndex][columnIndex];
+    }
+    public void setValueAt(Object value, int rowIndex, int columnIndex) {
+      data[rowIndex][columnIndex] = value;
+      TableModelEvent e = new TableModelEvent(this, rowIndex, rowIndex, columnIndex);
+      for(TableModelListener listener: new ArrayList<TableModelListener>(listenerList)) {
+        listener.tableChanged(e);
+      }
+    }
+    public void addTableModelListener(TableModelListener l) {
+      listenerList.add(l);
+    }
+    public void removeTableModelListener(TableModelListener l) {
+      listenerList.remove(l);
+    }
+  }
+
+  @Test
+  public void testModelNotifyingTableFirst() {
+    TableModel tableModel = new ForwardNotifyingTableModel(new Object[][] {{"a", 1}, {"b", 2}, {"a", 3}, {"c", 4}});
+    JTable table = new JTable(tableModel);
+    final TableRowSorter<TableModel> rowSorter = new TableRowSorter<TableModel>(tableModel);
+    rowSorter.setSortsOnUpdates(true);
+    table.setRowSorter(rowSorter);
+    final FilterableTableHeader filterableTableHeader = new FilterableTableHeader(table);
+    table.setTableHeader(filterableTableHeader);
+    filterableTableHeader.addFilterChangeListener(new TableHeaderFilterChangeListener() {
+      public void processFilterModification(int[] columns) {
+        rowSorter.setRowFilter(filterableTableHeader.getRowFilter());
+      }
+    });
+    DefaultTableHeaderFilter headerFilter = new DefaultTableHeaderFilter();
+    filterableTableHeader.setHeaderFilter(0, headerFilter);
+    headerFilter.setAcceptedValues(0, Arrays.asList("a"));
+    filterableTableHeader.notifyFilterChanged(new int[] {0}, new FilterableTableHeader.TableHeaderFilter[] {headerFilter});
+    assertEquals(2, rowSorter.getViewRowCount());
+    tableModel.setValueAt("a", 3, 0);
+    assertEquals(3, rowSorter.getViewRowCount());
+    tableModel.setValueAt("b", 0, 0);
+    assertEquals(2, rowSorter.getViewRowCount());
+    assertEquals(2, rowSorter.convertRowIndexToModel(0));
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Christopher Deckers (chrriis@nextencia.net)
+ * http://www.nextencia.net
+ *
+ * See the file "readme.txt" for information on usage and redistribution of
+ * this file, and for a DISCLAIMER OF ALL WARRANTIES.
+ */
+package net.nextencia.dj.swingsuite;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import org.junit.Test;
+
+/**
+ * @author Christopher Deckers
+ */
+public class JTextEntryFieldTest {
+
+  /**
+   * A mask of digits that must not decrease, so that each position depends on its neighbors.
+   */
+  private static class IncreasingDigitsMask extends TextEntryMask {
+    private int length;
+    public IncreasingDigitsMask(int length) {
+      this.length = length;
+    }
+    @Override
+    protected Integer getCodePoint(String text, int codePoint, int position) {
+      if(!Character.isDigit(codePoint)) {
+        return null;
+      }
+      if(position > 0 && text.codePointAt(position - 1) > codePoint) {
+        return null;
+      }
+      if(position < length - 1 && codePoint > text.codePointAt(position + 1)) {
+        return null;
+      }
+      return codePoint;
+    }
+    @Override
+    protected int getLength() {
+      return length;
+    }
+    @Override
+    protected int getDefaultCodePoint(int position) {
+      return '0';
+    }
+    @Override
+    protected int getNextValidInputPosition(int position) {
+      return position;
+    }
+  }
+
+  @Test
+  public void testInsertInMiddleOfPatternMask() throws BadLocationException {
+    JTextEntryField textEntryField = new JTextEntryField("12-ab", 0, new PatternTextEntryMask("##-LU", '_'));
+    textEntryField.setCaretPosition(0);
+    Document document = textEntryField.getDocument();
+    document.insertString(3, "XY", null);
+    assertEquals("12-xY", textEntryField.getText());
+    document.insertString(1, "a", null);
+    assertEquals("12-xY", textEntryField.getText());
+    document.remove(1, 3);
+    assertEquals("1_-_Y", textEntryField.getText());
+  }
+
+  @Test
+  public void testInsertInMiddleOfContextualMask() throws BadLocationException {
+    JTextEntryField textEntryField = new JTextEntryField("1299", 0, new IncreasingDigitsMask(4));
+    textEntryField.setCaretPosition(0);
+    Document document = textEntryField.getDocument();
+    // Each digit is valid next to the old text, but the edited text decreases.
+    document.insertString(1, "93", null);
+    assertEquals("1299", textEntryField.getText());
+    textEntryField.setText("1229");
+    textEntryField.setCaretPosition(0);
+    // The first digit is greater than the old text that follows, but not than the edited text.
+    document.insertString(1, "55", null);
+    assertEquals("1559", textEntryField.getText());
+  }
+
+}